@@ -0,0 +1,60 @@
+package telex;
+
+import org.openjdk.jmh.annotations.*;
+import telex.limit.ConcurrencyLimiter;
+import telex.limit.RateLimiter;
+import telex.limit.RetryPolicy;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls through everything above the network, answered in process by a {@link LoopbackTransport}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+
+    private static final String TOKEN = "123456:ABC-DEF1234ghIkl-zyx57W2v1u123ew11";
+
+    private static final String MESSAGE = "{\"message_id\":1001,\"chat\":{\"id\":123456789,\"type\":\"private\"},"
+                                          + "\"date\":1700000000,\"text\":\"Hello\"}";
+
+    private Telex plain;
+
+    private Telex limited;
+
+    private Map<String, Object> text;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var transport = LoopbackTransport.ok(MESSAGE);
+        this.plain = Telex.builder(TOKEN).transport(transport).build();
+        // limits far above the benchmark rate, so only their bookkeeping is measured
+        var unlimited = RateLimiter.Limit.of(1_000_000_000, Duration.ofSeconds(1));
+        this.limited = Telex.builder(TOKEN).transport(transport)
+                .rateLimiter(new RateLimiter(unlimited, unlimited, unlimited))
+                .retryPolicy(RetryPolicy.defaults())
+                .concurrencyLimiter(ConcurrencyLimiter.defaults())
+                .build();
+        this.text = new LinkedHashMap<>();
+        this.text.put("chat_id", 123456789);
+        this.text.put("text", "Hello, \u043f\u0440\u0438\u0432\u0435\u0442 \uD83D\uDC4B, this is a notification");
+    }
+
+    @Benchmark
+    public TelexResponse callAsync() {
+        return this.plain.callAsync("sendMessage", this.text, TelexResponse.bodyHandler()).join();
+    }
+
+    @Benchmark
+    public TelexResponse callAsyncLimited() {
+        return this.limited.callAsync("sendMessage", this.text, TelexResponse.bodyHandler()).join();
+    }
+}
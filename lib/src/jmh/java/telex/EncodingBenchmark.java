@@ -0,0 +1,123 @@
+package telex;
+
+import org.openjdk.jmh.annotations.*;
+import telex.support.Drain;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building request bodies from payloads and streaming them, run with -prof gc for bytes allocated per op
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncodingBenchmark {
+
+    private final Telex telex = new Telex("123456:ABC-DEF1234ghIkl-zyx57W2v1u123ew11");
+
+    private Path directory;
+
+    private Map<String, Object> text;
+
+    private Map<String, Object> form;
+
+    private PayloadTemplate template;
+
+    private Map<String, Object> file1m;
+
+    private Map<String, Object> file50m;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.text = new LinkedHashMap<>();
+        this.text.put("chat_id", 123456789);
+        this.text.put("text", "Hello, \u043f\u0440\u0438\u0432\u0435\u0442 \uD83D\uDC4B, this is a notification");
+
+        this.form = new LinkedHashMap<>();
+        this.form.put("chat_id", 123456789);
+        this.form.put("message_thread_id", 42);
+        this.form.put("text", "<b>Release 1.2.0</b> is out, see the <a href=\"https://example.org\">notes</a>");
+        this.form.put("parse_mode", "HTML");
+        this.form.put("disable_notification", true);
+        this.form.put("protect_content", false);
+        this.form.put("link_preview_options", Map.of("is_disabled", true));
+        this.form.put("reply_parameters", Map.of("message_id", 1001, "allow_sending_without_reply", true));
+        this.form.put("reply_markup", Map.of("inline_keyboard", List.of(
+                List.of(Map.of("text", "Open", "url", "https://example.org")),
+                List.of(Map.of("text", "Dismiss", "callback_data", "dismiss:1001")))));
+        this.form.put("business_connection_id", "bc-0001");
+
+        var fixed = new LinkedHashMap<>(this.form);
+        fixed.remove("chat_id");
+        this.template = PayloadTemplate.of(fixed);
+
+        this.directory = Files.createTempDirectory("telex-jmh");
+        this.file1m = this.filePayload("1m.bin", 1 << 20);
+        this.file50m = this.filePayload("50m.bin", 50 << 20);
+    }
+
+    private Map<String, Object> filePayload(String name, int size) throws IOException {
+        var bytes = new byte[size];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        var path = Files.write(this.directory.resolve(name), bytes);
+        var payload = new LinkedHashMap<String, Object>();
+        payload.put("chat_id", 123456789);
+        payload.put("caption", "report");
+        payload.put("document", path);
+        return payload;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (var name : List.of("1m.bin", "50m.bin")) {
+            Files.deleteIfExists(this.directory.resolve(name));
+        }
+        Files.deleteIfExists(this.directory);
+    }
+
+    @Benchmark
+    public long textOnly() {
+        return Drain.drain(Telex.toBodyPublisher(this.text));
+    }
+
+    @Benchmark
+    public long form10Fields() {
+        return Drain.drain(Telex.toBodyPublisher(this.form));
+    }
+
+    @Benchmark
+    public long form10FieldsTemplate() {
+        return Drain.drain(Telex.toBodyPublisher(this.template.bind("chat_id", 123456789)));
+    }
+
+    @Benchmark
+    public long file1m() {
+        return Drain.drain(Telex.toBodyPublisher(this.file1m));
+    }
+
+    @Benchmark
+    @Measurement(iterations = 5, time = 5)
+    public long file50m() {
+        return Drain.drain(Telex.toBodyPublisher(this.file50m));
+    }
+
+    @Benchmark
+    public String getEndpoint() {
+        return this.telex.getEndpoint("sendMessage");
+    }
+
+    @Benchmark
+    public Object getEndpointUri() {
+        return this.telex.getEndpointUri("sendMessage");
+    }
+}
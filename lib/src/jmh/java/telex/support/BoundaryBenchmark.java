@@ -0,0 +1,32 @@
+package telex.support;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Boundary generation under heavy sending concurrency
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class BoundaryBenchmark {
+
+    private final BoundaryGenerator boundaryGenerator = new BoundaryGenerator();
+
+    @Benchmark
+    public byte[] randomUuid() {
+        return UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] boundaryGenerator() {
+        return this.boundaryGenerator.next();
+    }
+}
@@ -0,0 +1,46 @@
+package telex.support;
+
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * Stream a body the way the HTTP client does, counting bytes instead of sending them, so that only the
+ * cost of producing the buffers is measured
+ */
+public final class Drain {
+
+    private Drain() {
+    }
+
+    public static long drain(HttpRequest.BodyPublisher publisher) {
+        var completion = new CompletableFuture<Long>();
+        publisher.subscribe(new Flow.Subscriber<>() {
+
+            private long length;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                this.length += item.remaining();
+                item.position(item.limit());
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                completion.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                completion.complete(this.length);
+            }
+        });
+        return completion.join();
+    }
+}
@@ -0,0 +1,65 @@
+package telex.support;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Iterating part bodies, run with -prof gc for bytes allocated per op
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IteratorBenchmark {
+
+    private byte[] file;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.file = new byte[1 << 20];
+        ThreadLocalRandom.current().nextBytes(this.file);
+    }
+
+    /**
+     * 1 MiB through {@link ByteArrayIterator#next()}, 128 chunks
+     */
+    @Benchmark
+    public long byteArrayIterator() {
+        var iterator = new ByteArrayIterator(new ByteArrayInputStream(this.file));
+        long length = 0;
+        while (iterator.hasNext()) {
+            length += iterator.next().length;
+        }
+        return length;
+    }
+
+    /**
+     * Ten text parts and a 1 MiB stream part, built and streamed
+     */
+    @Benchmark
+    public long multiPart() {
+        var publisher = new MultiPartBodyPublisher();
+        for (int i = 0; i < 10; i++) {
+            publisher.addPart("field" + i, "value of field " + i);
+        }
+        publisher.addPart("document", new MultiPartBodyPublisher.FilePartSpec() {
+
+            @Override
+            public String getFilename() {
+                return "report.bin";
+            }
+
+            @Override
+            public InputStream getInputStream() {
+                return new ByteArrayInputStream(IteratorBenchmark.this.file);
+            }
+        });
+        return Drain.drain(publisher.build());
+    }
+}
@@ -0,0 +1,66 @@
+package telex.webhook;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Webhook requests per second, driven by a local HTTP client
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(32)
+public class WebhookServerBenchmark {
+
+    private static final String SECRET_TOKEN = "benchmark-secret";
+
+    private static final String UPDATE = "{\"update_id\":10000,\"message\":{\"message_id\":1365,"
+                                         + "\"from\":{\"id\":1111111,\"is_bot\":false,\"first_name\":\"Test\"},"
+                                         + "\"chat\":{\"id\":1111111,\"type\":\"private\",\"first_name\":\"Test\"},"
+                                         + "\"date\":1441645532,\"text\":\"/start\"}}";
+
+    private final LongAdder received = new LongAdder();
+
+    private WebhookServer server;
+
+    private HttpClient client;
+
+    private HttpRequest request;
+
+    @Setup
+    public void setup() throws IOException {
+        WebhookServer.enableTcpNoDelay();
+        this.server = new WebhookServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), "/telegram",
+                SECRET_TOKEN, update -> this.received.increment());
+        this.server.start();
+        this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        this.request = HttpRequest.newBuilder()
+                .uri(URI.create("http://127.0.0.1:" + this.server.getAddress().getPort() + "/telegram"))
+                .header("Content-Type", "application/json")
+                .header("X-Telegram-Bot-Api-Secret-Token", SECRET_TOKEN)
+                .POST(HttpRequest.BodyPublishers.ofString(UPDATE))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.server.close();
+    }
+
+    @Benchmark
+    public int update() throws IOException, InterruptedException {
+        return this.client.send(this.request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -2,7 +2,12 @@ module telegram.telex {
     requires static org.jetbrains.annotations;
 
     requires java.net.http;
+    requires jdk.httpserver;
 
     exports telex;
+    exports telex.broadcast;
+    exports telex.limit;
     exports telex.support;
+    exports telex.updates;
+    exports telex.webhook;
 }
@@ -0,0 +1,261 @@
+package telex;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import telex.support.JsonValue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gather single message calls into calls of their batch methods, deleteMessage into deleteMessages,
+ * forwardMessage into forwardMessages and copyMessage into copyMessages
+ * <p>
+ * Calls which differ in message_id only are gathered for a short window, or until 100 are pending. Forwards and
+ * copies keep the order they were asked in: a call whose message_id is not above the last one gathered starts a
+ * new batch. A call which has nothing to be batched with is sent as it is. Calls of other methods and calls with
+ * fields the batch method does not take are sent right away.
+ */
+public class CallBatcher {
+
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private static final byte[] RESULT_PREFIX = "{\"ok\":true,\"result\":".getBytes(StandardCharsets.US_ASCII);
+
+    private static final Map<String, String> BATCH_METHODS = Map.of(
+            "deleteMessage", "deleteMessages",
+            "forwardMessage", "forwardMessages",
+            "copyMessage", "copyMessages"
+    );
+
+    private static final Map<String, Set<String>> BATCH_FIELDS = Map.of(
+            "deleteMessage", Set.of("chat_id"),
+            "forwardMessage", Set.of("chat_id", "message_thread_id", "from_chat_id",
+                    "disable_notification", "protect_content"),
+            "copyMessage", Set.of("chat_id", "message_thread_id", "from_chat_id",
+                    "disable_notification", "protect_content", "remove_caption")
+    );
+
+    private final Telex telex;
+
+    private final long windowNanos;
+
+    private final HashMap<String, Batch> batches = new HashMap<>();
+
+    /**
+     * Gather calls for 50 ms
+     *
+     * @param telex telex
+     */
+    public CallBatcher(@NotNull Telex telex) {
+        this(telex, Duration.ofMillis(50));
+    }
+
+    /**
+     * @param telex  telex
+     * @param window how long the first call of a batch waits for others
+     */
+    public CallBatcher(@NotNull Telex telex, @NotNull Duration window) {
+        Objects.requireNonNull(telex, "telex must be not null");
+        Objects.requireNonNull(window, "window must be not null");
+        this.telex = telex;
+        this.windowNanos = window.toNanos();
+    }
+
+    /**
+     * A forwardMessage or copyMessage call gathered with others gets the MessageId at its own position in the
+     * result of the batch call, forwardMessage too rather than a Message. Telegram skips messages which can't be
+     * forwarded or copied, if the result is shorter than the batch every caller gets the whole batch response.
+     * <p>
+     * A deleteMessage call gathered with others gets the response of the batch call. deleteMessages returns true
+     * even if some of the messages could not be deleted, errors of single messages are not reported.
+     *
+     * @param method  Telegram method
+     * @param payload Request payload
+     * @return response of the call, or of the batch call it was gathered into
+     */
+    public @NotNull CompletableFuture<TelexResponse> callAsync(@NotNull String method,
+                                                              @NotNull Map<String, ?> payload) {
+        Objects.requireNonNull(method, "method must be not null");
+        Objects.requireNonNull(payload, "payload must be not null");
+        var messageId = toMessageId(payload.get("message_id"));
+        if (messageId == null || !isBatchable(method, payload)) {
+            return this.telex.callAsync(method, payload, TelexResponse.bodyHandler());
+        }
+        var key = toKey(method, payload);
+        var response = new CompletableFuture<TelexResponse>();
+        Batch closed = null;
+        Batch ready = null;
+        synchronized (this.batches) {
+            var batch = this.batches.get(key);
+            if (batch != null && !batch.accepts(messageId)) {
+                // a forward or copy out of order sends the batch so far and starts the next one
+                this.batches.remove(key);
+                closed = batch;
+                batch = null;
+            }
+            if (batch == null) {
+                batch = new Batch(method, payload);
+                this.batches.put(key, batch);
+                var scheduled = batch;
+                CompletableFuture.delayedExecutor(this.windowNanos, TimeUnit.NANOSECONDS)
+                        .execute(() -> this.flush(key, scheduled));
+            }
+            batch.messageIds.add(messageId);
+            batch.responses.add(response);
+            if (batch.messageIds.size() >= MAX_BATCH_SIZE) {
+                this.batches.remove(key);
+                ready = batch;
+            }
+        }
+        if (closed != null) {
+            closed.send();
+        }
+        if (ready != null) {
+            ready.send();
+        }
+        return response;
+    }
+
+    private void flush(String key, Batch batch) {
+        synchronized (this.batches) {
+            if (!this.batches.remove(key, batch)) {
+                // sent when it filled up
+                return;
+            }
+        }
+        batch.send();
+    }
+
+    /**
+     * Calls are gathered if they agree on everything but message_id, numbers and strings alike
+     */
+    private static String toKey(String method, Map<String, ?> payload) {
+        var fields = new TreeMap<String, String>();
+        for (var entry : payload.entrySet()) {
+            if (!entry.getKey().equals("message_id")) {
+                fields.put(entry.getKey(), String.valueOf(entry.getValue()));
+            }
+        }
+        return method + fields;
+    }
+
+    private static boolean isBatchable(String method, Map<String, ?> payload) {
+        var fields = BATCH_FIELDS.get(method);
+        if (fields == null || !payload.containsKey("chat_id")) {
+            return false;
+        }
+        for (var name : payload.keySet()) {
+            if (!name.equals("message_id") && !fields.contains(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, ?> withoutMessageId(Map<String, ?> payload) {
+        var fields = new LinkedHashMap<String, Object>(payload);
+        fields.remove("message_id");
+        return fields;
+    }
+
+    private static @Nullable Long toMessageId(@Nullable Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof String) {
+            try {
+                return Long.parseLong((String) value);
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private final class Batch {
+
+        private final String method;
+
+        private final Map<String, ?> payload;
+
+        private final List<Long> messageIds = new ArrayList<>();
+
+        private final List<CompletableFuture<TelexResponse>> responses = new ArrayList<>();
+
+        private Batch(String method, Map<String, ?> payload) {
+            this.method = method;
+            this.payload = payload;
+        }
+
+        /**
+         * Forwards and copies are batched in strictly increasing message_id order, repeats included, deletions
+         * in any order
+         */
+        private boolean accepts(long messageId) {
+            return this.method.equals("deleteMessage")
+                   || messageId > this.messageIds.get(this.messageIds.size() - 1);
+        }
+
+        private void send() {
+            CompletableFuture<TelexResponse> call;
+            try {
+                if (this.responses.size() == 1) {
+                    call = telex.callAsync(this.method, this.payload, TelexResponse.bodyHandler());
+                } else {
+                    var payload = new LinkedHashMap<String, Object>(withoutMessageId(this.payload));
+                    // batch methods take strictly increasing identifiers, deletions are sorted and deduplicated
+                    payload.put("message_ids", this.method.equals("deleteMessage")
+                            ? new ArrayList<>(new TreeSet<>(this.messageIds))
+                            : this.messageIds);
+                    call = telex.callAsync(BATCH_METHODS.get(this.method), payload, TelexResponse.bodyHandler());
+                }
+            } catch (RuntimeException ex) {
+                call = CompletableFuture.failedFuture(ex);
+            }
+            call.whenComplete((response, error) -> {
+                var results = error == null ? this.toResults(response) : null;
+                for (int i = 0; i < this.responses.size(); i++) {
+                    var caller = this.responses.get(i);
+                    if (error != null) {
+                        caller.completeExceptionally(error);
+                    } else {
+                        caller.complete(results != null ? results.get(i) : response);
+                    }
+                }
+            });
+        }
+
+        /**
+         * @return response of every caller, null if they share the batch response
+         */
+        private @Nullable List<TelexResponse> toResults(TelexResponse response) {
+            var result = response.getResult();
+            if (this.responses.size() == 1 || this.method.equals("deleteMessage") || result == null
+                || result.getType() != JsonValue.Type.ARRAY || result.size() != this.responses.size()) {
+                return null;
+            }
+            var results = new ArrayList<TelexResponse>(this.responses.size());
+            for (var element : result.elements()) {
+                var messageId = element.toByteArray();
+                var body = new byte[RESULT_PREFIX.length + messageId.length + 1];
+                System.arraycopy(RESULT_PREFIX, 0, body, 0, RESULT_PREFIX.length);
+                System.arraycopy(messageId, 0, body, RESULT_PREFIX.length, messageId.length);
+                body[body.length - 1] = '}';
+                results.add(TelexResponse.of(response.getStatusCode(), body));
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package telex;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesce rapid edits of the same message, e.g. streamed progress, into at most one edit per interval
+ * of its chat
+ * <p>
+ * Edits are keyed by method, chat_id and message_id, or inline_message_id. While an edit waits for its turn
+ * newer content replaces it, and an edit equal to the content last sent is skipped. The future of an edit
+ * completes with the response of the edit which carried its content or newer content. A message is
+ * forgotten once it was not edited for an interval.
+ * <p>
+ * The interval is kept per chat, as Telegram limits chats rather than messages, so the messages of one
+ * chat take turns. Messages edited by inline_message_id have no known chat and are paced one by one, unless
+ * the caller names their chat with {@link #editAsync(String, Map, Object)}.
+ */
+public class EditCoalescer {
+
+    private final Telex telex;
+
+    private final long privateIntervalNanos;
+
+    private final long groupIntervalNanos;
+
+    private final ConcurrentHashMap<String, Message> messages = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Pace> paces = new ConcurrentHashMap<>();
+
+    /**
+     * One edit per second in private chats and every three seconds in groups, which stays within the chat
+     * limits of Telegram. An inline message edited without its chat is paced on its own, once per second.
+     *
+     * @param telex telex
+     */
+    public EditCoalescer(@NotNull Telex telex) {
+        this(telex, Duration.ofSeconds(1), Duration.ofSeconds(3));
+    }
+
+    /**
+     * An inline message, edited by inline_message_id, has no chat_id to pace it by. Unless its chat is passed to
+     * {@link #editAsync(String, Map, Object)}, each inline message is paced on its own with the private interval,
+     * so many inline messages of one group together may exceed the group limit.
+     *
+     * @param telex           telex
+     * @param privateInterval interval between edits in a private chat, and of an inline message without a chat
+     * @param groupInterval   interval between edits in a group or channel
+     */
+    public EditCoalescer(@NotNull Telex telex, @NotNull Duration privateInterval, @NotNull Duration groupInterval) {
+        Objects.requireNonNull(telex, "telex must be not null");
+        Objects.requireNonNull(privateInterval, "privateInterval must be not null");
+        Objects.requireNonNull(groupInterval, "groupInterval must be not null");
+        this.telex = telex;
+        this.privateIntervalNanos = privateInterval.toNanos();
+        this.groupIntervalNanos = groupInterval.toNanos();
+    }
+
+    /**
+     * @param method  edit method, e.g. editMessageText
+     * @param payload Request payload
+     * @return response of the edit which landed this content or newer content
+     */
+    public @NotNull CompletableFuture<TelexResponse> editAsync(@NotNull String method,
+                                                               @NotNull Map<String, ?> payload) {
+        Objects.requireNonNull(method, "method must be not null");
+        Objects.requireNonNull(payload, "payload must be not null");
+        return this.edit(method, payload, payload.get("chat_id"));
+    }
+
+    /**
+     * Edit paced by the given chat, e.g. an inline message whose chat is known from its callback query
+     *
+     * @param method  edit method, e.g. editMessageText
+     * @param payload Request payload
+     * @param chatId  chat whose interval the edit takes turns in, it is not sent
+     * @return response of the edit which landed this content or newer content
+     */
+    public @NotNull CompletableFuture<TelexResponse> editAsync(@NotNull String method,
+                                                               @NotNull Map<String, ?> payload,
+                                                               @NotNull Object chatId) {
+        Objects.requireNonNull(method, "method must be not null");
+        Objects.requireNonNull(payload, "payload must be not null");
+        Objects.requireNonNull(chatId, "chatId must be not null");
+        return this.edit(method, payload, chatId);
+    }
+
+    /**
+     * @param paceChatId chat to pace the edit by, or null to pace the message on its own
+     */
+    private CompletableFuture<TelexResponse> edit(String method, Map<String, ?> payload, @Nullable Object paceChatId) {
+        var chatId = payload.get("chat_id");
+        var messageId = payload.get("message_id");
+        var inlineMessageId = payload.get("inline_message_id");
+        if (inlineMessageId == null && (chatId == null || messageId == null)) {
+            throw new IllegalArgumentException("payload must have chat_id and message_id, or inline_message_id");
+        }
+        var key = inlineMessageId != null ? method + ":" + inlineMessageId : method + ":" + chatId + ":" + messageId;
+        var paceKey = paceChatId != null ? String.valueOf(paceChatId) : key;
+        long intervalNanos = isGroup(paceChatId) ? this.groupIntervalNanos : this.privateIntervalNanos;
+        var content = new LinkedHashMap<String, Object>(payload);
+        var response = new CompletableFuture<TelexResponse>();
+        while (true) {
+            var message = this.messages.computeIfAbsent(key,
+                    k -> new Message(k, method, this.acquirePace(paceKey, intervalNanos), intervalNanos));
+            if (message.offer(content, response)) {
+                return response;
+            }
+            // retired meanwhile
+            this.messages.remove(key, message);
+        }
+    }
+
+    /**
+     * @return messages with edits pending or sent recently
+     */
+    public int getActiveMessages() {
+        return this.messages.size();
+    }
+
+    /**
+     * @return pace of the chat, shared by its messages until the last one is forgotten
+     */
+    private Pace acquirePace(String paceKey, long intervalNanos) {
+        return this.paces.compute(paceKey, (k, pace) -> {
+            var shared = pace != null ? pace : new Pace(k, intervalNanos);
+            shared.messages++;
+            return shared;
+        });
+    }
+
+    private void releasePace(Pace pace) {
+        this.paces.computeIfPresent(pace.key,
+                (k, shared) -> shared == pace && --shared.messages == 0 ? null : shared);
+    }
+
+    private static boolean isGroup(@Nullable Object chatId) {
+        var id = String.valueOf(chatId);
+        return id.startsWith("-") || id.startsWith("@");
+    }
+
+    private final class Message {
+
+        private final String key;
+
+        private final String method;
+
+        private final Pace pace;
+
+        private final long intervalNanos;
+
+        private @Nullable Map<String, Object> pending;
+
+        private List<CompletableFuture<TelexResponse>> pendingResponses = new ArrayList<>();
+
+        private List<CompletableFuture<TelexResponse>> sentResponses = new ArrayList<>();
+
+        private @Nullable Map<String, Object> sent;
+
+        private @Nullable TelexResponse lastResponse;
+
+        private boolean inFlight;
+
+        private boolean scheduled;
+
+        private boolean expiring;
+
+        private boolean retired;
+
+        private long lastEdit = System.nanoTime();
+
+        private Message(String key, String method, Pace pace, long intervalNanos) {
+            this.key = key;
+            this.method = method;
+            this.pace = pace;
+            this.intervalNanos = intervalNanos;
+        }
+
+        /**
+         * @return false if the message was retired and must be looked up again
+         */
+        private boolean offer(Map<String, Object> content, CompletableFuture<TelexResponse> response) {
+            List<CompletableFuture<TelexResponse>> landed;
+            TelexResponse landedResponse;
+            synchronized (this) {
+                if (this.retired) {
+                    return false;
+                }
+                if (!content.equals(this.sent)) {
+                    this.pending = content;
+                    this.pendingResponses.add(response);
+                    this.schedule();
+                    return true;
+                }
+                // nothing changes, so pending content is dropped too
+                landed = this.pendingResponses;
+                landed.add(response);
+                this.pendingResponses = new ArrayList<>();
+                this.pending = null;
+                if (this.inFlight) {
+                    this.sentResponses.addAll(landed);
+                    return true;
+                }
+                landedResponse = this.lastResponse;
+            }
+            this.complete(landed, landedResponse, null);
+            return true;
+        }
+
+        /**
+         * Take the next turn of the chat for the pending content
+         */
+        private void schedule() {
+            if (this.inFlight || this.scheduled) {
+                return;
+            }
+            this.scheduled = true;
+            long now = System.nanoTime();
+            long delay = Math.max(0, this.pace.reserve(now) - now);
+            CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(this::send);
+        }
+
+        private void send() {
+            Map<String, Object> content;
+            synchronized (this) {
+                this.scheduled = false;
+                content = this.pending;
+                if (content == null) {
+                    // the pending content turned out unchanged
+                    this.expire();
+                    return;
+                }
+                this.pending = null;
+                this.sent = content;
+                this.sentResponses = this.pendingResponses;
+                this.pendingResponses = new ArrayList<>();
+                this.inFlight = true;
+                this.lastEdit = System.nanoTime();
+            }
+            CompletableFuture<TelexResponse> call;
+            try {
+                call = telex.callAsync(this.method, content, TelexResponse.bodyHandler());
+            } catch (RuntimeException ex) {
+                call = CompletableFuture.failedFuture(ex);
+            }
+            call.whenComplete(this::onResponse);
+        }
+
+        private void onResponse(@Nullable TelexResponse response, @Nullable Throwable error) {
+            List<CompletableFuture<TelexResponse>> responses;
+            synchronized (this) {
+                this.inFlight = false;
+                responses = this.sentResponses;
+                this.sentResponses = new ArrayList<>();
+                if (error == null && response != null && (response.isOk() || isNotModified(response))) {
+                    this.lastResponse = response;
+                } else {
+                    // send the same content again if it is edited again
+                    this.sent = null;
+                    this.lastResponse = null;
+                }
+                if (this.pending != null) {
+                    this.schedule();
+                } else {
+                    this.expire();
+                }
+            }
+            this.complete(responses, response, error);
+        }
+
+        /**
+         * Forget the message once it was not edited for an interval, unless it is edited again meanwhile
+         */
+        private void expire() {
+            if (this.expiring || this.retired || this.inFlight || this.scheduled || this.pending != null) {
+                return;
+            }
+            long delay = this.lastEdit + this.intervalNanos - System.nanoTime();
+            if (delay > 0) {
+                this.expiring = true;
+                CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> {
+                    synchronized (this) {
+                        this.expiring = false;
+                        this.expire();
+                    }
+                });
+                return;
+            }
+            this.retired = true;
+            messages.remove(this.key, this);
+            releasePace(this.pace);
+        }
+
+        private void complete(List<CompletableFuture<TelexResponse>> responses,
+                              @Nullable TelexResponse response, @Nullable Throwable error) {
+            for (var caller : responses) {
+                if (error != null) {
+                    caller.completeExceptionally(error);
+                } else {
+                    caller.complete(response);
+                }
+            }
+        }
+    }
+
+    /**
+     * Turns of a chat, one per interval
+     */
+    private static final class Pace {
+
+        private final String key;
+
+        private final long intervalNanos;
+
+        private long next = System.nanoTime();
+
+        /**
+         * Messages of the chat, guarded by the compute methods of the map
+         */
+        private int messages;
+
+        private Pace(String key, long intervalNanos) {
+            this.key = key;
+            this.intervalNanos = intervalNanos;
+        }
+
+        /**
+         * @param now current {@link System#nanoTime()}
+         * @return time of the turn taken
+         */
+        private synchronized long reserve(long now) {
+            long turn = Math.max(now, this.next);
+            this.next = turn + this.intervalNanos;
+            return turn;
+        }
+    }
+
+    /**
+     * Telegram refuses edits which change nothing, the content has landed all the same
+     */
+    private static boolean isNotModified(TelexResponse response) {
+        var description = response.getDescription();
+        return response.getErrorCode() == 400 && description != null && description.contains("message is not modified");
+    }
+}
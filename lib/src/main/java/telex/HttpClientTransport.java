@@ -0,0 +1,40 @@
+package telex;
+
+import org.jetbrains.annotations.NotNull;
+import telex.support.TypedBodyPublisher;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Send calls with a {@link HttpClient}
+ */
+public class HttpClientTransport implements Transport {
+
+    private final HttpClient httpClient;
+
+    /**
+     * Use default HttpClient
+     */
+    public HttpClientTransport() {
+        this(HttpClient.newHttpClient());
+    }
+
+    /**
+     * @param httpClient http client
+     */
+    public HttpClientTransport(@NotNull HttpClient httpClient) {
+        Objects.requireNonNull(httpClient, "httpClient must be not null");
+        this.httpClient = httpClient;
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Response> send(@NotNull URI endpoint, @NotNull String method,
+                                                     @NotNull TypedBodyPublisher body) {
+        return this.httpClient.sendAsync(Telex.createRequest(endpoint, body), HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> Response.of(response.statusCode(), response.headers(), response.body()));
+    }
+}
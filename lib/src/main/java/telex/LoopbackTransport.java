@@ -0,0 +1,126 @@
+package telex;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import telex.support.TypedBodyPublisher;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+/**
+ * Answer calls in process, without sockets, to test and benchmark everything above the network
+ * <p>
+ * The body is encoded and read in full like it would be sent, then passed to a handler.
+ */
+public class LoopbackTransport implements Transport {
+
+    private final Handler handler;
+
+    private final @Nullable Executor executor;
+
+    /**
+     * Run the handler on the thread completing the body, usually the calling one
+     *
+     * @param handler handler
+     */
+    public LoopbackTransport(@NotNull Handler handler) {
+        this(handler, null);
+    }
+
+    /**
+     * @param handler  handler
+     * @param executor executor running the handler, or null to run it on the thread completing the body
+     */
+    public LoopbackTransport(@NotNull Handler handler, @Nullable Executor executor) {
+        Objects.requireNonNull(handler, "handler must be not null");
+        this.handler = handler;
+        this.executor = executor;
+    }
+
+    /**
+     * @param result result JSON of every call
+     * @return transport answering every call successfully
+     */
+    public static @NotNull LoopbackTransport ok(@NotNull String result) {
+        Objects.requireNonNull(result, "result must be not null");
+        var body = ("{\"ok\":true,\"result\":" + result + "}").getBytes(StandardCharsets.UTF_8);
+        return new LoopbackTransport((method, contentType, payload) -> Response.of(200, body));
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Response> send(@NotNull URI endpoint, @NotNull String method,
+                                                     @NotNull TypedBodyPublisher body) {
+        var contentType = body.contentType();
+        var received = read(body);
+        return this.executor == null
+                ? received.thenApply(payload -> this.handle(method, contentType, payload))
+                : received.thenApplyAsync(payload -> this.handle(method, contentType, payload), this.executor);
+    }
+
+    private Response handle(String method, String contentType, byte[] payload) {
+        var response = this.handler.handle(method, contentType, payload);
+        if (response == null) {
+            throw new IllegalStateException("handler returned no response for " + method);
+        }
+        return response;
+    }
+
+    private static CompletableFuture<byte[]> read(TypedBodyPublisher body) {
+        var result = new CompletableFuture<byte[]>();
+        long contentLength = body.contentLength();
+        body.subscribe(new Flow.Subscriber<>() {
+
+            private byte[] buffer = new byte[contentLength >= 0 && contentLength <= Integer.MAX_VALUE - 8
+                    ? (int) contentLength : 256];
+
+            private int length = 0;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                int remaining = item.remaining();
+                if (this.length + remaining > this.buffer.length) {
+                    this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length << 1, this.length + remaining));
+                }
+                item.get(this.buffer, this.length, remaining);
+                this.length += remaining;
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                result.complete(this.length == this.buffer.length ? this.buffer : Arrays.copyOf(this.buffer, this.length));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Answers a call
+     */
+    @FunctionalInterface
+    public interface Handler {
+
+        /**
+         * @param method      Telegram method
+         * @param contentType Content-Type of the body
+         * @param body        encoded payload
+         * @return response
+         */
+        @NotNull Response handle(@NotNull String method, @NotNull String contentType, @NotNull byte[] body);
+    }
+}
@@ -0,0 +1,306 @@
+package telex;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import telex.support.JsonValue;
+import telex.support.TypedBodyPublisher;
+import telex.support.UrlEncodedBodyPublisher;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Payload whose fixed fields are encoded once, for sending the same message to many chats
+ * <p>
+ * A bound payload is an ordinary map, so it can be passed to any call. Its body consists of the variable
+ * fields followed by the shared encoding of the fixed ones.
+ * <p>
+ * Fixed files are uploaded once. The first call of the template uploads them while concurrent calls wait,
+ * then every call refers to them by the file_id Telegram returned, e.g. {@code result.photo} of sendPhoto.
+ * If the upload fails, e.g. the chat blocked the bot, the next call uploads them again. Files whose file_id
+ * cannot be found in the response are uploaded by every call.
+ * <pre>{@code
+ * var template = PayloadTemplate.of(Map.of("text", "Hello", "parse_mode", "HTML"));
+ * telex.callAsync("sendMessage", template.bind("chat_id", chatId));
+ * }</pre>
+ */
+public final class PayloadTemplate {
+
+    private final Map<String, ?> fixed;
+
+    private final @Nullable byte[] encoded;
+
+    private final List<String> fileFields;
+
+    /**
+     * Template with file_ids instead of files, once uploaded
+     */
+    private @Nullable PayloadTemplate uploaded;
+
+    private @Nullable CompletableFuture<Void> upload;
+
+    private boolean reusable;
+
+    private PayloadTemplate(Map<String, ?> fixed, @Nullable byte[] encoded, List<String> fileFields) {
+        this.fixed = fixed;
+        this.encoded = encoded;
+        this.fileFields = fileFields;
+        this.reusable = !fileFields.isEmpty();
+    }
+
+    /**
+     * @param fixed fields shared by all payloads, copied
+     * @return template
+     */
+    public static @NotNull PayloadTemplate of(@NotNull Map<String, ?> fixed) {
+        Objects.requireNonNull(fixed, "fixed must be not null");
+        var copy = Collections.unmodifiableMap(new LinkedHashMap<>(fixed));
+        var fileFields = new ArrayList<String>();
+        for (var entry : copy.entrySet()) {
+            if (Telex.isFilePart(entry.getValue())) {
+                fileFields.add(entry.getKey());
+            }
+        }
+        byte[] encoded = null;
+        if (fileFields.isEmpty()) {
+            var publisher = new UrlEncodedBodyPublisher();
+            Telex.addParts(publisher, copy);
+            encoded = publisher.toByteArray();
+        }
+        return new PayloadTemplate(copy, encoded, List.copyOf(fileFields));
+    }
+
+    /**
+     * @return fields shared by all payloads
+     */
+    public @NotNull Map<String, ?> getFixed() {
+        return this.fixed;
+    }
+
+    /**
+     * @param name  variable field, e.g. chat_id
+     * @param value value
+     * @return payload
+     */
+    public @NotNull Map<String, Object> bind(@NotNull String name, @NotNull Object value) {
+        Objects.requireNonNull(name, "name must be not null");
+        Objects.requireNonNull(value, "value must be not null");
+        return new Bound(this, Collections.singletonMap(name, value));
+    }
+
+    /**
+     * @param variables variable fields, not copied
+     * @return payload
+     */
+    public @NotNull Map<String, Object> bind(@NotNull Map<String, ?> variables) {
+        Objects.requireNonNull(variables, "variables must be not null");
+        return new Bound(this, variables);
+    }
+
+    /**
+     * @return whether files are still to be uploaded by the next call
+     */
+    synchronized boolean isUploadPending() {
+        return this.reusable && this.uploaded == null;
+    }
+
+    /**
+     * @return template referring to the uploaded files, or null if they were not uploaded
+     */
+    synchronized @Nullable PayloadTemplate getUploaded() {
+        return this.uploaded;
+    }
+
+    /**
+     * @return upload in progress to wait for, or null if the caller was elected to upload
+     */
+    synchronized @Nullable CompletableFuture<Void> claimUpload() {
+        if (this.upload != null) {
+            return this.upload;
+        }
+        this.upload = new CompletableFuture<>();
+        return null;
+    }
+
+    /**
+     * @param response response of the upload, or null if it failed
+     */
+    void completeUpload(@Nullable TelexResponse response) {
+        CompletableFuture<Void> upload;
+        synchronized (this) {
+            var result = response != null && response.isOk() ? response.getResult() : null;
+            if (result != null) {
+                var resolved = new LinkedHashMap<String, Object>(this.fixed);
+                for (var name : this.fileFields) {
+                    var fileId = getFileId(result, name);
+                    if (fileId == null) {
+                        this.reusable = false;
+                        break;
+                    }
+                    resolved.put(name, fileId);
+                }
+                if (this.reusable) {
+                    this.uploaded = of(resolved);
+                }
+            }
+            upload = this.upload;
+            this.upload = null;
+        }
+        if (upload != null) {
+            upload.complete(null);
+        }
+    }
+
+    /**
+     * @param message sent message
+     * @param name    file field, which is named like the message field, e.g. photo or document
+     * @return file_id, of the largest size for photos
+     */
+    static @Nullable String getFileId(@NotNull JsonValue message, @NotNull String name) {
+        var media = message.get(name);
+        if (media != null && media.getType() == JsonValue.Type.ARRAY) {
+            media = media.size() > 0 ? media.get(media.size() - 1) : null;
+        }
+        if (media == null || media.getType() != JsonValue.Type.OBJECT) {
+            return null;
+        }
+        return media.getString("file_id");
+    }
+
+    /**
+     * Variable fields over the fixed ones, read-only
+     */
+    static final class Bound extends AbstractMap<String, Object> {
+
+        private final PayloadTemplate template;
+
+        private final Map<String, ?> variables;
+
+        private Bound(PayloadTemplate template, Map<String, ?> variables) {
+            this.template = template;
+            this.variables = variables;
+        }
+
+        @NotNull PayloadTemplate getTemplate() {
+            return this.template;
+        }
+
+        @NotNull Map<String, ?> getVariables() {
+            return this.variables;
+        }
+
+        /**
+         * @return body with the shared encoding of the fixed fields, or null if it cannot be used
+         */
+        @Nullable TypedBodyPublisher toBodyPublisher() {
+            var encoded = this.template.encoded;
+            if (encoded == null || Telex.hasFilePart(this.variables) || this.overridesFixed()) {
+                return null;
+            }
+            var publisher = new UrlEncodedBodyPublisher(32);
+            Telex.addParts(publisher, this.variables);
+            return publisher.build(encoded);
+        }
+
+        private boolean overridesFixed() {
+            for (var name : this.variables.keySet()) {
+                if (this.template.fixed.containsKey(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Object get(Object key) {
+            var value = this.variables.get(key);
+            return value != null || this.variables.containsKey(key) ? value : this.template.fixed.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return this.variables.containsKey(key) || this.template.fixed.containsKey(key);
+        }
+
+        @Override
+        public @NotNull Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<>() {
+
+                @Override
+                public @NotNull Iterator<Entry<String, Object>> iterator() {
+                    return new EntryIterator(Bound.this);
+                }
+
+                @Override
+                public int size() {
+                    int size = Bound.this.variables.size();
+                    for (var name : Bound.this.template.fixed.keySet()) {
+                        if (!Bound.this.variables.containsKey(name)) {
+                            size++;
+                        }
+                    }
+                    return size;
+                }
+            };
+        }
+    }
+
+    /**
+     * Variable entries, then fixed entries which are not overridden
+     */
+    private static final class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+
+        private final Map<String, ?> variables;
+
+        private final Iterator<? extends Map.Entry<String, ?>> variableEntries;
+
+        private final Iterator<? extends Map.Entry<String, ?>> fixedEntries;
+
+        private Map.@Nullable Entry<String, ?> next;
+
+        private EntryIterator(Bound bound) {
+            this.variables = bound.variables;
+            this.variableEntries = bound.variables.entrySet().iterator();
+            this.fixedEntries = bound.template.fixed.entrySet().iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.next != null) {
+                return true;
+            }
+            if (this.variableEntries.hasNext()) {
+                this.next = this.variableEntries.next();
+                return true;
+            }
+            while (this.fixedEntries.hasNext()) {
+                var entry = this.fixedEntries.next();
+                if (!this.variables.containsKey(entry.getKey())) {
+                    this.next = entry;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            var entry = this.next;
+            this.next = null;
+            return new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue());
+        }
+    }
+}
@@ -1,7 +1,17 @@
 package telex;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import telex.limit.ConcurrencyLimiter;
+import telex.limit.Lane;
+import telex.limit.RateLimiter;
+import telex.limit.RetryPolicy;
+import telex.support.BoundaryGenerator;
+import telex.support.FileIdCache;
+import telex.support.JsonWriter;
 import telex.support.MultiPartBodyPublisher;
+import telex.support.TypedBodyPublisher;
+import telex.support.UrlEncodedBodyPublisher;
 
 import java.io.File;
 import java.io.IOException;
@@ -9,12 +19,26 @@ import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystems;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 /**
@@ -24,11 +48,42 @@ import java.util.function.Supplier;
  */
 public class Telex {
 
-    private static final String TELEGRAM_API = "https://api.telegram.org/bot%s/%s";
-    private static final String TELEGRAM_FILE_API = "https://api.telegram.org/file/bot%s/%s";
+    private static final String TELEGRAM_BASE_URL = "https://api.telegram.org";
+    private static final String TELEGRAM_API = "%s/bot%s/%s";
+    private static final String TELEGRAM_FILE_API = "%s/file/bot%s/%s";
+
+    /**
+     * Methods whose endpoints are built eagerly
+     */
+    private static final List<String> COMMON_METHODS = List.of(
+            "getMe", "getUpdates", "getFile", "getChat", "getChatMember",
+            "sendMessage", "forwardMessage", "forwardMessages", "copyMessage", "copyMessages",
+            "sendPhoto", "sendAudio", "sendDocument", "sendVideo", "sendAnimation", "sendVoice", "sendVideoNote",
+            "sendMediaGroup", "sendLocation", "sendContact", "sendPoll", "sendDice", "sendSticker", "sendChatAction",
+            "editMessageText", "editMessageCaption", "editMessageMedia", "editMessageReplyMarkup",
+            "deleteMessage", "deleteMessages", "answerCallbackQuery", "answerInlineQuery"
+    );
+
+    /**
+     * Upper bound of cached endpoints, arbitrary method names must not grow the cache without limit
+     */
+    private static final int ENDPOINT_CACHE_LIMIT = 256;
+
+    private static final BoundaryGenerator defaultBoundaryGenerator = new BoundaryGenerator();
+
+    private static final System.Logger logger = System.getLogger(Telex.class.getName());
 
     private final String token;
-    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final boolean localMode;
+    private final Transport transport;
+    private final BoundaryGenerator boundaryGenerator = new BoundaryGenerator();
+    private final @Nullable RateLimiter rateLimiter;
+    private final @Nullable RetryPolicy retryPolicy;
+    private final @Nullable ConcurrencyLimiter concurrencyLimiter;
+    private final @Nullable FileIdCache fileIdCache;
+    private final String endpointPrefix;
+    private final ConcurrentHashMap<String, URI> endpoints = new ConcurrentHashMap<>();
 
     /**
      * Use default HttpClient
@@ -36,7 +91,7 @@ public class Telex {
      * @param token bot token
      */
     public Telex(@NotNull String token) {
-        this(token, HttpClient.newHttpClient());
+        this(builder(token));
     }
 
     /**
@@ -46,28 +101,396 @@ public class Telex {
      * @param httpClient http client
      */
     public Telex(@NotNull String token, @NotNull HttpClient httpClient) {
-        Objects.requireNonNull(token, "token must be not null");
-        Objects.requireNonNull(httpClient, "httpClient must be not null");
-        this.token = token;
-        this.httpClient = httpClient;
+        this(builder(token).httpClient(httpClient));
+    }
+
+    private Telex(Builder builder) {
+        this.token = builder.token;
+        this.baseUrl = builder.baseUrl;
+        this.localMode = builder.localMode;
+        if (builder.transport != null) {
+            this.transport = builder.transport;
+        } else {
+            this.transport = new HttpClientTransport(
+                    builder.httpClient != null ? builder.httpClient : HttpClient.newHttpClient());
+        }
+        this.rateLimiter = builder.rateLimiter;
+        this.retryPolicy = builder.retryPolicy;
+        this.concurrencyLimiter = builder.concurrencyLimiter;
+        this.fileIdCache = builder.fileIdCache;
+        this.endpointPrefix = String.format(TELEGRAM_API, this.baseUrl, this.token, "");
+        try {
+            for (var method : COMMON_METHODS) {
+                this.endpoints.put(method, URI.create(this.endpointPrefix + method));
+            }
+        } catch (IllegalArgumentException ex) {
+            // malformed token, calls fail when they are made, as they always did
+            this.endpoints.clear();
+        }
+    }
+
+    /**
+     * @param token bot token
+     * @return builder
+     */
+    public static @NotNull Builder builder(@NotNull String token) {
+        return new Builder(token);
     }
 
     public @NotNull CompletableFuture<String> callAsync(@NotNull String method, @NotNull Map<String, ?> payload) {
-        var endpoint = this.getEndpoint(method);
-        var request = createRequest(endpoint, payload);
-        return this.httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .thenApply(HttpResponse::body);
+        return this.callAsync(method, payload, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * @param method      Telegram method
+     * @param payload     Request payload
+     * @param bodyHandler response body handler, e.g. {@link TelexResponse#bodyHandler()}
+     * @param <T>         response body type
+     * @return response body
+     */
+    public @NotNull <T> CompletableFuture<T> callAsync(@NotNull String method, @NotNull Map<String, ?> payload,
+                                                       @NotNull HttpResponse.BodyHandler<T> bodyHandler) {
+        Objects.requireNonNull(method, "method must be not null");
+        return this.callAsync(method, payload, Lane.of(method), bodyHandler);
+    }
+
+    /**
+     * @param method      Telegram method
+     * @param payload     Request payload
+     * @param lane        priority of the call for the rate and concurrency limiters
+     * @param bodyHandler response body handler, e.g. {@link TelexResponse#bodyHandler()}
+     * @param <T>         response body type
+     * @return response body
+     */
+    public @NotNull <T> CompletableFuture<T> callAsync(@NotNull String method, @NotNull Map<String, ?> payload,
+                                                       @NotNull Lane lane,
+                                                       @NotNull HttpResponse.BodyHandler<T> bodyHandler) {
+        Objects.requireNonNull(lane, "lane must be not null");
+        var endpoint = this.getEndpointUri(method);
+        var resolved = this.localMode ? toLocalFiles(payload) : payload;
+        if (resolved instanceof PayloadTemplate.Bound) {
+            var bound = (PayloadTemplate.Bound) resolved;
+            var template = bound.getTemplate();
+            if (template.isUploadPending()) {
+                return this.uploadOnce(method, bound, lane, bodyHandler);
+            }
+            var uploaded = template.getUploaded();
+            if (uploaded != null) {
+                resolved = uploaded.bind(bound.getVariables());
+            }
+        }
+        if (this.fileIdCache != null && hasFilePart(resolved)) {
+            var uploads = new HashMap<String, String>();
+            return this.resolveFileIds(resolved, uploads).thenCompose(withFileIds -> {
+                var response = this.exchange(endpoint, method, withFileIds, lane);
+                if (!uploads.isEmpty()) {
+                    response = response.whenComplete((r, error) -> {
+                        if (error == null) {
+                            this.learnFileIds(TelexResponse.of(r.getStatusCode(), r.getBody()), uploads);
+                        }
+                    });
+                }
+                return response.thenCompose(r -> replay(r, bodyHandler));
+            });
+        }
+        return this.exchange(endpoint, method, resolved, lane).thenCompose(response -> replay(response, bodyHandler));
+    }
+
+    /**
+     * Replace files on disk by their file URIs, a local Bot API server reads them itself
+     *
+     * @param payload payload
+     * @return payload to send, the same if it has no files on disk
+     */
+    static Map<String, ?> toLocalFiles(Map<String, ?> payload) {
+        Map<String, Object> resolved = null;
+        for (var entry : payload.entrySet()) {
+            var value = entry.getValue();
+            var path = value instanceof File ? ((File) value).toPath() : value instanceof Path ? (Path) value : null;
+            if (path == null || path.getFileSystem() != FileSystems.getDefault()) {
+                continue;
+            }
+            if (resolved == null) {
+                resolved = new LinkedHashMap<>(payload);
+            }
+            resolved.put(entry.getKey(), path.toAbsolutePath().toUri().toString());
+        }
+        return resolved != null ? resolved : payload;
+    }
+
+    /**
+     * Replace files on disk by their cached file_ids, files which changed are hashed off the caller's thread
+     *
+     * @param payload payload
+     * @param uploads receives digests of the files to upload by field
+     * @return payload to send, the same if it has no files on disk
+     */
+    private CompletableFuture<Map<String, ?>> resolveFileIds(Map<String, ?> payload, Map<String, String> uploads) {
+        var digests = new LinkedHashMap<String, CompletableFuture<String>>();
+        for (var entry : payload.entrySet()) {
+            var value = entry.getValue();
+            var path = value instanceof File ? ((File) value).toPath() : value instanceof Path ? (Path) value : null;
+            if (path != null) {
+                digests.put(entry.getKey(), this.fileIdCache.digestAsync(path));
+            }
+        }
+        return CompletableFuture.allOf(digests.values().toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            Map<String, Object> resolved = null;
+            for (var entry : digests.entrySet()) {
+                var digest = entry.getValue().join();
+                var fileId = this.fileIdCache.getFileId(digest);
+                if (fileId == null) {
+                    uploads.put(entry.getKey(), digest);
+                    continue;
+                }
+                if (resolved == null) {
+                    resolved = new LinkedHashMap<>(payload);
+                }
+                resolved.put(entry.getKey(), fileId);
+            }
+            return resolved != null ? resolved : payload;
+        });
+    }
+
+    private void learnFileIds(TelexResponse response, Map<String, String> uploads) {
+        var message = response.isOk() ? response.getResult() : null;
+        if (message == null) {
+            return;
+        }
+        for (var upload : uploads.entrySet()) {
+            var fileId = PayloadTemplate.getFileId(message, upload.getKey());
+            if (fileId == null) {
+                continue;
+            }
+            // Telegram has the file already, the call succeeds even if the cache cannot keep its file_id
+            try {
+                this.fileIdCache.putFileId(upload.getValue(), fileId);
+            } catch (RuntimeException ex) {
+                logger.log(System.Logger.Level.WARNING, "failed to cache file_id of " + upload.getKey(), ex);
+            }
+        }
+    }
+
+    /**
+     * Upload the files of the template with this call if no other call does, otherwise wait for that upload
+     * and call again
+     */
+    private <T> CompletableFuture<T> uploadOnce(String method, PayloadTemplate.Bound payload, Lane lane,
+                                                HttpResponse.BodyHandler<T> bodyHandler) {
+        var template = payload.getTemplate();
+        var upload = template.claimUpload();
+        if (upload != null) {
+            return upload.thenCompose(ignored -> this.callAsync(method, payload, lane, bodyHandler));
+        }
+        CompletableFuture<Transport.Response> response;
+        try {
+            response = this.exchange(this.getEndpointUri(method), method, payload, lane);
+        } catch (RuntimeException ex) {
+            template.completeUpload(null);
+            throw ex;
+        }
+        return response
+                .whenComplete((r, error) -> template.completeUpload(
+                        error == null ? TelexResponse.of(r.getStatusCode(), r.getBody()) : null))
+                .thenCompose(r -> replay(r, bodyHandler));
+    }
+
+    /**
+     * @return response as bytes, after retries if there is a retry policy
+     */
+    private CompletableFuture<Transport.Response> exchange(URI endpoint, String method, Map<String, ?> payload,
+                                                           Lane lane) {
+        if (this.retryPolicy == null) {
+            return this.send(endpoint, method, payload, lane);
+        }
+        var result = new CompletableFuture<Transport.Response>();
+        this.attempt(endpoint, method, payload, lane, 1, result);
+        return result;
+    }
+
+    /**
+     * Build the body anew, so that streams of file parts are reopened on every attempt
+     */
+    private CompletableFuture<Transport.Response> send(URI endpoint, String method, Map<String, ?> payload, Lane lane) {
+        TypedBodyPublisher body;
+        try {
+            body = toBodyPublisher(payload, this.boundaryGenerator);
+        } catch (RuntimeException ex) {
+            // e.g. a file which can't be read fails the call the same way whether or not it is retried
+            return CompletableFuture.failedFuture(ex);
+        }
+        if (this.rateLimiter == null) {
+            return this.send(endpoint, method, body, lane, null);
+        }
+        var chatId = payload.get("chat_id");
+        var ready = this.rateLimiter.acquire(chatId, lane);
+        // a retry_after slows down the chat whether or not the call is retried
+        return this.send(endpoint, method, body, lane, ready).whenComplete((response, error) -> {
+            if (error == null && response.getStatusCode() == 429) {
+                int retryAfter = TelexResponse.of(429, response.getBody()).getRetryAfter();
+                if (retryAfter > 0) {
+                    this.rateLimiter.penalize(chatId, Duration.ofSeconds(retryAfter));
+                }
+            }
+        });
+    }
+
+    /**
+     * @param ready completes when the rate limiter lets the call go, or null to send right away
+     */
+    private CompletableFuture<Transport.Response> send(URI endpoint, String method, TypedBodyPublisher body, Lane lane,
+                                                       @Nullable CompletableFuture<Void> ready) {
+        if (this.concurrencyLimiter == null) {
+            return ready == null
+                    ? this.transport.send(endpoint, method, body)
+                    : ready.thenCompose(ignored -> this.transport.send(endpoint, method, body));
+        }
+        // wait for the rate first, a call must not hold a slot in flight while it is delayed
+        var permit = ready == null
+                ? this.concurrencyLimiter.acquire(lane)
+                : ready.thenCompose(ignored -> this.concurrencyLimiter.acquire(lane));
+        return permit.thenCompose(p -> {
+            CompletableFuture<Transport.Response> response;
+            try {
+                response = this.transport.send(endpoint, method, body);
+            } catch (RuntimeException ex) {
+                // nothing went out, the slot says nothing about the load
+                p.onIgnore();
+                return CompletableFuture.failedFuture(ex);
+            }
+            return response.whenComplete((r, error) -> {
+                if (error instanceof CancellationException) {
+                    p.onIgnore();
+                } else if (error != null || r.getStatusCode() == 429 || r.getStatusCode() >= 500) {
+                    p.onDropped();
+                } else {
+                    p.onSuccess();
+                }
+            });
+        });
+    }
+
+    /**
+     * Receive the body as bytes to look at the status, the caller's body handler gets them once no retry is due
+     */
+    private void attempt(URI endpoint, String method, Map<String, ?> payload, Lane lane, int attempt,
+                         CompletableFuture<Transport.Response> result) {
+        if (result.isDone()) {
+            return;
+        }
+        CompletableFuture<Transport.Response> response;
+        try {
+            response = this.send(endpoint, method, payload, lane);
+        } catch (RuntimeException ex) {
+            result.completeExceptionally(ex);
+            return;
+        }
+        response.whenComplete((r, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+                return;
+            }
+            long delay = -1;
+            int status = r.getStatusCode();
+            if (status == 429 || status >= 500) {
+                // send has penalized the rate limiter already
+                int retryAfter = status == 429 ? TelexResponse.of(status, r.getBody()).getRetryAfter() : 0;
+                delay = this.retryPolicy.getDelayMillis(attempt, status, retryAfter);
+            }
+            if (delay < 0) {
+                result.complete(r);
+                return;
+            }
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                    .execute(() -> this.attempt(endpoint, method, payload, lane, attempt + 1, result));
+        });
+    }
+
+    /**
+     * @param response    response received by the transport
+     * @param bodyHandler body handler of the caller
+     * @return body converted by the handler
+     */
+    private static <T> CompletionStage<T> replay(Transport.Response response,
+                                                 HttpResponse.BodyHandler<T> bodyHandler) {
+        try {
+            var subscriber = bodyHandler.apply(new HttpResponse.ResponseInfo() {
+
+                @Override
+                public int statusCode() {
+                    return response.getStatusCode();
+                }
+
+                @Override
+                public HttpHeaders headers() {
+                    return response.getHeaders();
+                }
+
+                @Override
+                public HttpClient.Version version() {
+                    // transports do not report it, the Bot API is served over HTTP/1.1
+                    return HttpClient.Version.HTTP_1_1;
+                }
+            });
+            subscriber.onSubscribe(new Flow.Subscription() {
+
+                private boolean done;
+
+                @Override
+                public void request(long n) {
+                    if (this.done) {
+                        return;
+                    }
+                    this.done = true;
+                    if (n <= 0) {
+                        subscriber.onError(new IllegalArgumentException("non-positive request"));
+                        return;
+                    }
+                    subscriber.onNext(List.of(ByteBuffer.wrap(response.getBody())));
+                    subscriber.onComplete();
+                }
+
+                @Override
+                public void cancel() {
+                    this.done = true;
+                }
+            });
+            return subscriber.getBody();
+        } catch (RuntimeException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
     }
 
     public @NotNull String call(@NotNull String method, @NotNull Map<String, ?> payload) {
-        var endpoint = this.getEndpoint(method);
-        var request = createRequest(endpoint, payload);
+        return this.call(method, payload, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * @param method      Telegram method
+     * @param payload     Request payload
+     * @param bodyHandler response body handler, e.g. {@link TelexResponse#bodyHandler()}
+     * @param <T>         response body type
+     * @return response body
+     */
+    public @NotNull <T> T call(@NotNull String method, @NotNull Map<String, ?> payload,
+                               @NotNull HttpResponse.BodyHandler<T> bodyHandler) {
         try {
-            return this.httpClient.send(request, HttpResponse.BodyHandlers.ofString()).body();
-        } catch (IOException | InterruptedException ex) {
-            if (ex instanceof IOException) {
-                throw new UncheckedIOException((IOException) ex);
+            return this.callAsync(method, payload, bodyHandler).get();
+        } catch (ExecutionException ex) {
+            var cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException((IOException) cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(ex);
         }
     }
@@ -78,10 +501,36 @@ public class Telex {
      * @return Request
      */
     public static HttpRequest createRequest(@NotNull String endpoint, @NotNull Map<String, ?> payload) {
+        return createRequest(endpoint, payload, defaultBoundaryGenerator);
+    }
+
+    /**
+     * @param endpoint          Telegram endpoint
+     * @param payload           Request payload
+     * @param boundaryGenerator multipart boundary generator
+     * @return Request
+     */
+    public static HttpRequest createRequest(@NotNull String endpoint, @NotNull Map<String, ?> payload,
+                                            @NotNull BoundaryGenerator boundaryGenerator) {
+        return createRequest(URI.create(endpoint), payload, boundaryGenerator);
+    }
+
+    /**
+     * @param endpoint          Telegram endpoint
+     * @param payload           Request payload
+     * @param boundaryGenerator multipart boundary generator
+     * @return Request
+     */
+    public static HttpRequest createRequest(@NotNull URI endpoint, @NotNull Map<String, ?> payload,
+                                            @NotNull BoundaryGenerator boundaryGenerator) {
+        return createRequest(endpoint, toBodyPublisher(payload, boundaryGenerator));
+    }
+
+    static HttpRequest createRequest(URI endpoint, TypedBodyPublisher body) {
         return HttpRequest.newBuilder()
-                .uri(URI.create(endpoint))
-                .header("Content-Type", "multipart/form-data")
-                .POST(toBodyPublisher(payload))
+                .uri(endpoint)
+                .header("Content-Type", body.contentType())
+                .POST(body)
                 .build();
     }
 
@@ -91,10 +540,37 @@ public class Telex {
      * @param payload payload
      * @return BodyPublisher
      */
-    public static HttpRequest.BodyPublisher toBodyPublisher(@NotNull Map<String, ?> payload) {
+    public static TypedBodyPublisher toBodyPublisher(@NotNull Map<String, ?> payload) {
+        return toBodyPublisher(payload, defaultBoundaryGenerator);
+    }
+
+    /**
+     * Build BodyPublisher from payload, payloads without files are urlencoded, others are multipart.
+     * Maps, collections and arrays are sent as JSON.
+     *
+     * @param payload           payload
+     * @param boundaryGenerator multipart boundary generator
+     * @return BodyPublisher
+     */
+    public static TypedBodyPublisher toBodyPublisher(@NotNull Map<String, ?> payload,
+                                                     @NotNull BoundaryGenerator boundaryGenerator) {
         Objects.requireNonNull(payload, "payload must be not null");
-        var publisher = new MultiPartBodyPublisher();
-        payload.forEach((name, value) -> {
+        if (payload instanceof PayloadTemplate.Bound) {
+            var body = ((PayloadTemplate.Bound) payload).toBodyPublisher();
+            if (body != null) {
+                return body;
+            }
+        }
+        JsonWriter json = null;
+        if (!hasFilePart(payload)) {
+            var publisher = new UrlEncodedBodyPublisher();
+            addParts(publisher, payload);
+            return publisher.build();
+        }
+        var publisher = new MultiPartBodyPublisher(boundaryGenerator);
+        for (var entry : payload.entrySet()) {
+            var name = entry.getKey();
+            var value = entry.getValue();
             if (value instanceof Path) {
                 publisher.addPart(name, MultiPartBodyPublisher.FilePartSpec.from((Path) value));
             } else if (value instanceof File) {
@@ -103,13 +579,83 @@ public class Telex {
                 publisher.addPart(name, toFilePartSpec(name, (Supplier<?>) value));
             } else if (value instanceof MultiPartBodyPublisher.FilePartSpec) {
                 publisher.addPart(name, (MultiPartBodyPublisher.FilePartSpec) value);
+            } else if (JsonWriter.isStructured(value)) {
+                json = toJson(json, value);
+                publisher.addPart(name, json.toByteArray());
             } else {
                 publisher.addPart(name, String.valueOf(value));
             }
-        });
+        }
         return publisher.build();
     }
 
+    /**
+     * @param publisher body to add to
+     * @param payload   payload without files
+     */
+    static void addParts(UrlEncodedBodyPublisher publisher, Map<String, ?> payload) {
+        JsonWriter json = null;
+        for (var entry : payload.entrySet()) {
+            var value = entry.getValue();
+            if (JsonWriter.isStructured(value)) {
+                json = toJson(json, value);
+                publisher.addPart(entry.getKey(), json.toByteArray());
+            } else {
+                publisher.addPart(entry.getKey(), String.valueOf(value));
+            }
+        }
+    }
+
+    /**
+     * Encode payload as a JSON object, for the places which take JSON bodies such as webhook replies
+     *
+     * @param payload payload, without files
+     * @return UTF-8 JSON
+     */
+    public static byte[] toJson(@NotNull Map<String, ?> payload) {
+        Objects.requireNonNull(payload, "payload must be not null");
+        if (hasFilePart(payload)) {
+            throw new IllegalArgumentException("files cannot be sent as JSON");
+        }
+        return new JsonWriter().writeObject(payload).toByteArray();
+    }
+
+    /**
+     * @param json  writer to reuse, or null
+     * @param value structured payload value
+     * @return writer holding the value as JSON
+     */
+    private static JsonWriter toJson(@Nullable JsonWriter json, Object value) {
+        if (json == null) {
+            json = new JsonWriter();
+        } else {
+            json.reset();
+        }
+        return json.writeValue(value);
+    }
+
+    /**
+     * @param payload payload
+     * @return whether any value has to be sent as a file part
+     */
+    static boolean hasFilePart(Map<String, ?> payload) {
+        for (var value : payload.values()) {
+            if (isFilePart(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param value payload value
+     * @return whether the value has to be sent as a file part
+     */
+    static boolean isFilePart(@Nullable Object value) {
+        return value instanceof Path || value instanceof File || value instanceof Supplier<?>
+               || value instanceof MultiPartBodyPublisher.FilePartSpec;
+    }
+
     /**
      * Convert input stream supplier to file part
      *
@@ -141,16 +687,155 @@ public class Telex {
      * @return API endpoint
      */
     public @NotNull String getEndpoint(@NotNull String method) {
+        return this.getEndpointUri(method).toString();
+    }
+
+    /**
+     * Parsed endpoints are cached per method, uncommon methods are cached lazily up to a bound
+     *
+     * @param method Telegram method
+     * @return API endpoint
+     */
+    public @NotNull URI getEndpointUri(@NotNull String method) {
         Objects.requireNonNull(method, "method must be not null");
-        return String.format(TELEGRAM_API, this.token, method);
+        var endpoint = this.endpoints.get(method);
+        if (endpoint != null) {
+            return endpoint;
+        }
+        endpoint = URI.create(this.endpointPrefix + method);
+        if (this.endpoints.size() < ENDPOINT_CACHE_LIMIT) {
+            this.endpoints.putIfAbsent(method, endpoint);
+        }
+        return endpoint;
     }
 
     /**
-     * @param filePath Telegram method
+     * In local mode getFile returns absolute paths on the disk of the server, they are resolved to file URLs
+     * which are read directly, e.g. by {@code Path.of(URI.create(url))}
+     *
+     * @param filePath file_path of a File
      * @return Telegram file url
      */
     public @NotNull String getFileUrl(@NotNull String filePath) {
         Objects.requireNonNull(filePath, "filePath must be not null");
-        return String.format(TELEGRAM_FILE_API, this.token, filePath);
+        if (this.localMode && filePath.startsWith("/")) {
+            return Path.of(filePath).toUri().toString();
+        }
+        return String.format(TELEGRAM_FILE_API, this.baseUrl, this.token, filePath);
+    }
+
+    /**
+     * Optional parts of a {@link Telex}
+     */
+    public static final class Builder {
+
+        private final String token;
+        private String baseUrl = TELEGRAM_BASE_URL;
+        private boolean localMode = false;
+        private @Nullable HttpClient httpClient;
+        private @Nullable Transport transport;
+        private @Nullable RateLimiter rateLimiter;
+        private @Nullable RetryPolicy retryPolicy;
+        private @Nullable ConcurrencyLimiter concurrencyLimiter;
+        private @Nullable FileIdCache fileIdCache;
+
+        private Builder(String token) {
+            Objects.requireNonNull(token, "token must be not null");
+            this.token = token;
+        }
+
+        /**
+         * @param baseUrl Bot API server, https://api.telegram.org by default
+         * @return this
+         */
+        public @NotNull Builder baseUrl(@NotNull String baseUrl) {
+            Objects.requireNonNull(baseUrl, "baseUrl must be not null");
+            this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+            return this;
+        }
+
+        /**
+         * For a self-hosted Bot API server started with --local on the same host. Files on disk are passed
+         * by their file URIs instead of being uploaded, and file paths of getFile are read from disk.
+         *
+         * @param localMode whether the server at {@link #baseUrl(String)} runs in local mode
+         * @return this
+         * @see <a href="https://github.com/tdlib/telegram-bot-api">telegram-bot-api</a>
+         */
+        public @NotNull Builder localMode(boolean localMode) {
+            this.localMode = localMode;
+            return this;
+        }
+
+        /**
+         * @param httpClient http client, a default one if not set, unused if a transport is set
+         * @return this
+         */
+        public @NotNull Builder httpClient(@NotNull HttpClient httpClient) {
+            Objects.requireNonNull(httpClient, "httpClient must be not null");
+            this.httpClient = httpClient;
+            return this;
+        }
+
+        /**
+         * Send calls another way than over HTTP, e.g. with {@link LoopbackTransport}
+         *
+         * @param transport transport, a {@link HttpClientTransport} if not set
+         * @return this
+         */
+        public @NotNull Builder transport(@NotNull Transport transport) {
+            Objects.requireNonNull(transport, "transport must be not null");
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * Delay calls to stay within Telegram limits, e.g. {@link RateLimiter#telegramDefaults()}
+         *
+         * @param rateLimiter rate limiter, or null to send calls right away
+         * @return this
+         */
+        public @NotNull Builder rateLimiter(@Nullable RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        /**
+         * Repeat calls answered with 429 or 5xx, e.g. {@link RetryPolicy#defaults()}. A 429 also holds back
+         * the rate limiter, if any.
+         *
+         * @param retryPolicy retry policy, or null to return every response as it is
+         * @return this
+         */
+        public @NotNull Builder retryPolicy(@Nullable RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * Adapt the number of calls in flight to how Telegram copes, e.g. {@link ConcurrencyLimiter#defaults()}
+         *
+         * @param concurrencyLimiter concurrency limiter, or null not to limit calls in flight
+         * @return this
+         */
+        public @NotNull Builder concurrencyLimiter(@Nullable ConcurrencyLimiter concurrencyLimiter) {
+            this.concurrencyLimiter = concurrencyLimiter;
+            return this;
+        }
+
+        /**
+         * Send files on disk by the file_id of an earlier upload of the same content
+         *
+         * @param fileIdCache file_id cache of this bot, or null to upload files every time
+         * @return this
+         */
+        public @NotNull Builder fileIdCache(@Nullable FileIdCache fileIdCache) {
+            this.fileIdCache = fileIdCache;
+            return this;
+        }
+
+        public @NotNull Telex build() {
+            return new Telex(this);
+        }
     }
 }
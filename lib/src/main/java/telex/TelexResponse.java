@@ -0,0 +1,149 @@
+package telex;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import telex.support.JsonException;
+import telex.support.JsonReader;
+import telex.support.JsonValue;
+
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Telegram API response, read lazily from the response bytes
+ * <p>
+ * The top level is scanned once to locate its members, which are only decoded when accessed.
+ *
+ * @see <a href="https://core.telegram.org/bots/api#making-requests">Making requests</a>
+ */
+public final class TelexResponse {
+
+    private final int statusCode;
+
+    private final byte[] body;
+
+    private boolean ok = false;
+
+    private @Nullable JsonValue result;
+
+    private @Nullable JsonValue errorCode;
+
+    private @Nullable JsonValue description;
+
+    private @Nullable JsonValue parameters;
+
+    private TelexResponse(int statusCode, byte[] body) {
+        this.statusCode = statusCode;
+        this.body = body;
+        try {
+            var reader = new JsonReader(body);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "ok":
+                        this.ok = reader.nextBoolean();
+                        break;
+                    case "result":
+                        this.result = JsonValue.next(reader);
+                        break;
+                    case "error_code":
+                        this.errorCode = JsonValue.next(reader);
+                        break;
+                    case "description":
+                        this.description = JsonValue.next(reader);
+                        break;
+                    case "parameters":
+                        this.parameters = JsonValue.next(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+        } catch (JsonException ex) {
+            // not a Bot API response, e.g. an error page of a proxy
+            this.ok = false;
+        }
+    }
+
+    /**
+     * @param statusCode HTTP status code
+     * @param body       response body, not copied
+     * @return response
+     */
+    public static @NotNull TelexResponse of(int statusCode, @NotNull byte[] body) {
+        Objects.requireNonNull(body, "body must be not null");
+        return new TelexResponse(statusCode, body);
+    }
+
+    /**
+     * @return body handler parsing the response bytes
+     */
+    public static @NotNull HttpResponse.BodyHandler<TelexResponse> bodyHandler() {
+        return responseInfo -> HttpResponse.BodySubscribers.mapping(
+                HttpResponse.BodySubscribers.ofByteArray(),
+                body -> new TelexResponse(responseInfo.statusCode(), body));
+    }
+
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+
+    public boolean isOk() {
+        return this.ok;
+    }
+
+    /**
+     * @return result, or null if the request failed
+     */
+    public @Nullable JsonValue getResult() {
+        return this.result;
+    }
+
+    /**
+     * @return Telegram error code, falls back to the HTTP status code of failed responses
+     */
+    public int getErrorCode() {
+        if (this.errorCode != null) {
+            return this.errorCode.asInt();
+        }
+        return this.ok ? 0 : this.statusCode;
+    }
+
+    public @Nullable String getDescription() {
+        return this.description == null || this.description.isNull() ? null : this.description.asString();
+    }
+
+    /**
+     * @return parameters of failed requests, or null
+     */
+    public @Nullable JsonValue getParameters() {
+        return this.parameters;
+    }
+
+    /**
+     * @return seconds to wait before repeating a flood-limited request, 0 if not limited
+     */
+    public int getRetryAfter() {
+        return this.parameters == null ? 0 : (int) this.parameters.getLong("retry_after", 0);
+    }
+
+    /**
+     * @return identifier of the supergroup a group migrated to, 0 if it did not
+     */
+    public long getMigrateToChatId() {
+        return this.parameters == null ? 0 : this.parameters.getLong("migrate_to_chat_id", 0);
+    }
+
+    /**
+     * @return raw response body, not copied
+     */
+    public byte[] getBody() {
+        return this.body;
+    }
+
+    @Override
+    public String toString() {
+        return new String(this.body, StandardCharsets.UTF_8);
+    }
+}
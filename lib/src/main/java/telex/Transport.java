@@ -0,0 +1,86 @@
+package telex;
+
+import org.jetbrains.annotations.NotNull;
+import telex.support.TypedBodyPublisher;
+
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends encoded calls of a {@link Telex}, {@link HttpClientTransport} by default
+ * <p>
+ * Rate limits, retries and body handlers are applied by Telex around the transport, so a transport only
+ * delivers one request and its response. A retried call is sent again with a new body.
+ *
+ * @see LoopbackTransport
+ */
+public interface Transport {
+
+    /**
+     * @param endpoint API endpoint of the method
+     * @param method   Telegram method
+     * @param body     encoded payload
+     * @return response, or a failed future if no response was received
+     */
+    @NotNull CompletableFuture<Response> send(@NotNull URI endpoint, @NotNull String method,
+                                              @NotNull TypedBodyPublisher body);
+
+    /**
+     * Response received by a transport
+     */
+    final class Response {
+
+        private static final HttpHeaders NO_HEADERS = HttpHeaders.of(Map.of(), (name, value) -> true);
+
+        private final int statusCode;
+
+        private final HttpHeaders headers;
+
+        private final byte[] body;
+
+        private Response(int statusCode, HttpHeaders headers, byte[] body) {
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        /**
+         * @param statusCode HTTP status code
+         * @param body       response body, not copied
+         * @return response without headers
+         */
+        public static @NotNull Response of(int statusCode, @NotNull byte[] body) {
+            return of(statusCode, NO_HEADERS, body);
+        }
+
+        /**
+         * @param statusCode HTTP status code
+         * @param headers    response headers
+         * @param body       response body, not copied
+         * @return response
+         */
+        public static @NotNull Response of(int statusCode, @NotNull HttpHeaders headers, @NotNull byte[] body) {
+            Objects.requireNonNull(headers, "headers must be not null");
+            Objects.requireNonNull(body, "body must be not null");
+            return new Response(statusCode, headers, body);
+        }
+
+        public int getStatusCode() {
+            return this.statusCode;
+        }
+
+        public @NotNull HttpHeaders getHeaders() {
+            return this.headers;
+        }
+
+        /**
+         * @return response body, not copied
+         */
+        public @NotNull byte[] getBody() {
+            return this.body;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package telex.broadcast;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import telex.PayloadTemplate;
+import telex.Telex;
+import telex.TelexResponse;
+import telex.limit.Lane;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Send one message to many chats as fast as the limits of the {@link Telex} allow, in the
+ * {@link Lane#BULK} lane
+ * <p>
+ * Every recipient is settled once it got the message or failed for good, e.g. blocked the bot with 403.
+ * Settled recipients are checkpointed by their index in the recipient sequence, so a run over the same
+ * sequence resumes where the previous one stopped. Recipients which failed transiently are left unsettled
+ * and are tried again by the next run.
+ * <p>
+ * A 429 Too Many Requests is left to the {@link Telex}, which slows down the chat by retry_after and retries
+ * the call if it has a retry policy. A recipient still limited after that is left unsettled.
+ */
+public class Broadcast {
+
+    private static final System.Logger logger = System.getLogger(Broadcast.class.getName());
+
+    private final Telex telex;
+
+    private final String method;
+
+    private final PayloadTemplate message;
+
+    private final Path checkpoint;
+
+    private int maxInFlight = 64;
+
+    private @Nullable Consumer<Object> blockedHandler;
+
+    /**
+     * @param telex      telex
+     * @param method     Telegram method, e.g. sendMessage
+     * @param message    payload without chat_id, encoded once for all recipients
+     * @param checkpoint checkpoint file, created if it does not exist
+     */
+    public Broadcast(@NotNull Telex telex, @NotNull String method, @NotNull Map<String, ?> message,
+                     @NotNull Path checkpoint) {
+        Objects.requireNonNull(telex, "telex must be not null");
+        Objects.requireNonNull(method, "method must be not null");
+        Objects.requireNonNull(message, "message must be not null");
+        Objects.requireNonNull(checkpoint, "checkpoint must be not null");
+        this.telex = telex;
+        this.method = method;
+        this.message = PayloadTemplate.of(message);
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * @param maxInFlight calls sent but not answered yet, 64 by default
+     * @return this
+     */
+    public @NotNull Broadcast setMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * @param blockedHandler called with the chat_id of every recipient who blocked the bot
+     * @return this
+     */
+    public @NotNull Broadcast setBlockedHandler(@Nullable Consumer<Object> blockedHandler) {
+        this.blockedHandler = blockedHandler;
+        return this;
+    }
+
+    /**
+     * @param recipients chat ids, in the same order on every run
+     * @return result, completed once every recipient was tried
+     */
+    public @NotNull CompletableFuture<Result> run(@NotNull Iterator<?> recipients) {
+        Objects.requireNonNull(recipients, "recipients must be not null");
+        var run = new Run(recipients, Checkpoint.open(this.checkpoint));
+        run.pump();
+        return run.result;
+    }
+
+    /**
+     * @param chatId recipient
+     * @return payload for the recipient
+     */
+    protected @NotNull Map<String, ?> createPayload(@NotNull Object chatId) {
+        return this.message.bind("chat_id", chatId);
+    }
+
+    private final class Run {
+
+        private final Iterator<?> recipients;
+
+        private final Checkpoint checkpoint;
+
+        private final CompletableFuture<Result> result = new CompletableFuture<>();
+
+        private int position;
+
+        private int inFlight;
+
+        private boolean pumping;
+
+        private boolean again;
+
+        private boolean finished;
+
+        private int sent;
+
+        private int blocked;
+
+        private int failed;
+
+        private int skipped;
+
+        private Run(Iterator<?> recipients, Checkpoint checkpoint) {
+            this.recipients = recipients;
+            this.checkpoint = checkpoint;
+        }
+
+        /**
+         * Send to the next recipients while the window allows, one pump at a time
+         */
+        private void pump() {
+            synchronized (this) {
+                if (this.pumping) {
+                    this.again = true;
+                    return;
+                }
+                this.pumping = true;
+            }
+            while (true) {
+                int index = -1;
+                Object chatId = null;
+                synchronized (this) {
+                    try {
+                        while (!this.result.isDone() && this.inFlight < maxInFlight && this.recipients.hasNext()) {
+                            var recipient = this.recipients.next();
+                            int i = this.position++;
+                            if (this.checkpoint.isSettled(i)) {
+                                this.skipped++;
+                                continue;
+                            }
+                            index = i;
+                            chatId = recipient;
+                            this.inFlight++;
+                            break;
+                        }
+                    } catch (RuntimeException ex) {
+                        this.fail(ex);
+                    }
+                    if (index < 0) {
+                        if (this.again) {
+                            this.again = false;
+                            continue;
+                        }
+                        this.pumping = false;
+                        if (this.inFlight == 0 && !this.finished) {
+                            this.finished = true;
+                            this.finish();
+                        }
+                        return;
+                    }
+                }
+                this.send(index, chatId);
+            }
+        }
+
+        private void send(int index, Object chatId) {
+            CompletableFuture<TelexResponse> call;
+            try {
+                call = telex.callAsync(method, createPayload(chatId), Lane.BULK, TelexResponse.bodyHandler());
+            } catch (RuntimeException ex) {
+                call = CompletableFuture.failedFuture(ex);
+            }
+            call.whenComplete((response, error) -> this.onResponse(index, chatId, response, error));
+        }
+
+        private void onResponse(int index, Object chatId, @Nullable TelexResponse response,
+                                @Nullable Throwable error) {
+            boolean sent = false;
+            boolean blocked = false;
+            try {
+                if (error != null || response == null) {
+                    logger.log(System.Logger.Level.DEBUG, "broadcast to " + chatId + " failed", error);
+                } else if (response.isOk()) {
+                    this.checkpoint.settle(index);
+                    sent = true;
+                } else if (response.getErrorCode() == 403) {
+                    this.checkpoint.settle(index);
+                    blocked = true;
+                    this.onBlocked(chatId);
+                } else {
+                    int code = response.getErrorCode();
+                    if (code >= 400 && code < 500 && code != 429) {
+                        // e.g. chat not found, which will not change on the next run
+                        this.checkpoint.settle(index);
+                    }
+                    logger.log(System.Logger.Level.DEBUG, "broadcast to " + chatId + " failed: " + response);
+                }
+            } catch (RuntimeException ex) {
+                synchronized (this) {
+                    this.fail(ex);
+                }
+            }
+            synchronized (this) {
+                this.inFlight--;
+                if (sent) {
+                    this.sent++;
+                } else if (blocked) {
+                    this.blocked++;
+                } else {
+                    this.failed++;
+                }
+            }
+            this.pump();
+        }
+
+        private void onBlocked(Object chatId) {
+            if (blockedHandler == null) {
+                return;
+            }
+            try {
+                blockedHandler.accept(chatId);
+            } catch (RuntimeException ex) {
+                logger.log(System.Logger.Level.WARNING, "blocked handler failed", ex);
+            }
+        }
+
+        /**
+         * Close the checkpoint once nothing is in flight, the result may be done already if the run failed or
+         * was cancelled
+         */
+        private void finish() {
+            try {
+                this.checkpoint.close();
+                this.result.complete(new Result(this.sent, this.blocked, this.failed, this.skipped));
+            } catch (RuntimeException ex) {
+                this.result.completeExceptionally(ex);
+            }
+        }
+
+        private void fail(RuntimeException ex) {
+            this.result.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Counts of a run
+     */
+    public static final class Result {
+
+        private final int sent;
+
+        private final int blocked;
+
+        private final int failed;
+
+        private final int skipped;
+
+        private Result(int sent, int blocked, int failed, int skipped) {
+            this.sent = sent;
+            this.blocked = blocked;
+            this.failed = failed;
+            this.skipped = skipped;
+        }
+
+        /**
+         * @return recipients who got the message
+         */
+        public int getSent() {
+            return this.sent;
+        }
+
+        /**
+         * @return recipients who blocked the bot
+         */
+        public int getBlocked() {
+            return this.blocked;
+        }
+
+        /**
+         * @return recipients who did not get the message for other reasons
+         */
+        public int getFailed() {
+            return this.failed;
+        }
+
+        /**
+         * @return recipients settled by earlier runs
+         */
+        public int getSkipped() {
+            return this.skipped;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{sent=" + this.sent + ", blocked=" + this.blocked
+                   + ", failed=" + this.failed + ", skipped=" + this.skipped + '}';
+        }
+    }
+}
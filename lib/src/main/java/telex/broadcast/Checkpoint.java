@@ -0,0 +1,137 @@
+package telex.broadcast;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * Append-only record of settled recipient indices
+ * <p>
+ * The file is a sequence of big-endian ints. An index is non-negative, a negative value -1 - n stands for all
+ * indices below n. Opening the file compacts it into one such watermark followed by the indices above it.
+ * Records are written in batches, so up to a batch may be sent again after a crash.
+ */
+final class Checkpoint implements Closeable {
+
+    private static final int BATCH_RECORDS = 1024;
+
+    private static final long FLUSH_INTERVAL_NANOS = Duration.ofSeconds(1).toNanos();
+
+    private final BitSet settled;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BATCH_RECORDS * Integer.BYTES);
+
+    private long lastFlush = System.nanoTime();
+
+    private Checkpoint(BitSet settled, FileChannel channel) {
+        this.settled = settled;
+        this.channel = channel;
+    }
+
+    /**
+     * @param path checkpoint file, created if it does not exist
+     * @return checkpoint with the indices settled so far
+     */
+    static @NotNull Checkpoint open(@NotNull Path path) {
+        Objects.requireNonNull(path, "path must be not null");
+        try {
+            var settled = read(path);
+            var temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (var out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                int watermark = settled.nextClearBit(0);
+                var buffer = ByteBuffer.allocate((1 + settled.cardinality() - watermark) * Integer.BYTES);
+                buffer.putInt(-1 - watermark);
+                for (int i = settled.nextSetBit(watermark); i >= 0; i = settled.nextSetBit(i + 1)) {
+                    buffer.putInt(i);
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            var channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            return new Checkpoint(settled, channel);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static BitSet read(Path path) throws IOException {
+        var settled = new BitSet();
+        if (!Files.exists(path)) {
+            return settled;
+        }
+        // a record cut short by a crash is ignored
+        var records = ByteBuffer.wrap(Files.readAllBytes(path)).asIntBuffer();
+        while (records.hasRemaining()) {
+            int record = records.get();
+            if (record >= 0) {
+                settled.set(record);
+            } else {
+                settled.set(0, -1 - record);
+            }
+        }
+        return settled;
+    }
+
+    /**
+     * @param index recipient index
+     * @return whether the recipient was settled by an earlier run
+     */
+    synchronized boolean isSettled(int index) {
+        return this.settled.get(index);
+    }
+
+    /**
+     * @param index recipient index
+     */
+    synchronized void settle(int index) {
+        this.settled.set(index);
+        this.buffer.putInt(index);
+        if (!this.buffer.hasRemaining() || System.nanoTime() - this.lastFlush >= FLUSH_INTERVAL_NANOS) {
+            this.flush();
+        }
+    }
+
+    synchronized void flush() {
+        this.buffer.flip();
+        try {
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            this.buffer.clear();
+            this.lastFlush = System.nanoTime();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            this.flush();
+        } finally {
+            try {
+                this.channel.close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+}
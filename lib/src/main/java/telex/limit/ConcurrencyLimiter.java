@@ -0,0 +1,195 @@
+package telex.limit;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Adaptive limit of calls in flight, raised additively while calls succeed at a low round trip time and cut
+ * multiplicatively on 429, 5xx or failed calls (AIMD)
+ * <p>
+ * Calls over the limit wait in a bounded queue. Its {@link Lane}s are served by weight, first come first served
+ * within a lane.
+ */
+public class ConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    /**
+     * Round trips this much slower than the fastest recent one mean requests queue up somewhere
+     */
+    private static final double RTT_TOLERANCE = 2.0;
+
+    private static final int RTT_WINDOW = 500;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final int maxQueueDepth;
+
+    private final LaneQueue<CompletableFuture<Permit>> queue = new LaneQueue<>();
+
+    private double limit;
+
+    private int inFlight;
+
+    private long minRtt = Long.MAX_VALUE;
+
+    private long windowMinRtt = Long.MAX_VALUE;
+
+    private int windowSamples;
+
+    /**
+     * @param initialLimit  limit to start from
+     * @param minLimit      lower bound of the limit
+     * @param maxLimit      upper bound of the limit
+     * @param maxQueueDepth calls which may wait for a slot
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int maxQueueDepth) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+        }
+        if (maxQueueDepth < 0) {
+            throw new IllegalArgumentException("maxQueueDepth must be not negative");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueueDepth = maxQueueDepth;
+    }
+
+    /**
+     * @return starting from 16 calls, between 1 and 256, with up to 10000 waiting
+     */
+    public static @NotNull ConcurrencyLimiter defaults() {
+        return new ConcurrencyLimiter(16, 1, 256, 10_000);
+    }
+
+    /**
+     * @param lane lane of the call
+     * @return permit, completed once a slot is free, or failed with {@link RejectedExecutionException} if
+     * the queue is full
+     */
+    public @NotNull CompletableFuture<Permit> acquire(@NotNull Lane lane) {
+        Objects.requireNonNull(lane, "lane must be not null");
+        var waiter = new CompletableFuture<Permit>();
+        synchronized (this) {
+            if (this.queue.isEmpty() && this.inFlight < (int) this.limit) {
+                this.inFlight++;
+                return CompletableFuture.completedFuture(new Permit());
+            }
+            if (this.queue.size() >= this.maxQueueDepth) {
+                return CompletableFuture.failedFuture(new RejectedExecutionException("too many queued calls"));
+            }
+            this.queue.add(lane, waiter);
+        }
+        return waiter;
+    }
+
+    /**
+     * @return current limit
+     */
+    public synchronized int getLimit() {
+        return (int) this.limit;
+    }
+
+    /**
+     * @return calls in flight
+     */
+    public synchronized int getInFlight() {
+        return this.inFlight;
+    }
+
+    /**
+     * @return calls waiting for a slot
+     */
+    public synchronized int getQueued() {
+        return this.queue.size();
+    }
+
+    private void release(long rtt, boolean dropped) {
+        var ready = new ArrayList<CompletableFuture<Permit>>();
+        synchronized (this) {
+            this.inFlight--;
+            if (dropped) {
+                this.limit = Math.max(this.minLimit, this.limit * BACKOFF_RATIO);
+            } else if (rtt >= 0) {
+                this.sample(rtt);
+                if (rtt <= this.minRtt * RTT_TOLERANCE && this.inFlight * 2 >= this.limit) {
+                    this.limit = Math.min(this.maxLimit, this.limit + 1 / this.limit);
+                }
+            }
+            while (!this.queue.isEmpty() && this.inFlight < (int) this.limit) {
+                this.inFlight++;
+                ready.add(this.queue.poll());
+            }
+        }
+        for (var waiter : ready) {
+            if (!waiter.complete(new Permit())) {
+                // cancelled while waiting
+                this.release(-1, false);
+            }
+        }
+    }
+
+    /**
+     * The fastest round trip of the previous window, so that the baseline follows changes of the network
+     */
+    private void sample(long rtt) {
+        this.windowMinRtt = Math.min(this.windowMinRtt, rtt);
+        this.minRtt = Math.min(this.minRtt, rtt);
+        if (++this.windowSamples >= RTT_WINDOW) {
+            this.minRtt = this.windowMinRtt;
+            this.windowMinRtt = Long.MAX_VALUE;
+            this.windowSamples = 0;
+        }
+    }
+
+    /**
+     * Slot of one call, to be released exactly once
+     */
+    public final class Permit {
+
+        private final long start = System.nanoTime();
+
+        private boolean released;
+
+        private Permit() {
+        }
+
+        /**
+         * The call went through, its round trip time counts
+         */
+        public void onSuccess() {
+            this.release(System.nanoTime() - this.start, false);
+        }
+
+        /**
+         * The call was limited, failed on the server or did not complete
+         */
+        public void onDropped() {
+            this.release(-1, true);
+        }
+
+        /**
+         * The call says nothing about the load, e.g. it was cancelled
+         */
+        public void onIgnore() {
+            this.release(-1, false);
+        }
+
+        private void release(long rtt, boolean dropped) {
+            synchronized (this) {
+                if (this.released) {
+                    return;
+                }
+                this.released = true;
+            }
+            ConcurrencyLimiter.this.release(rtt, dropped);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package telex.limit;
+
+/**
+ * Priority of a call when the rate budget or the calls in flight run short
+ * <p>
+ * Waiting calls are served by weight, so higher lanes go first while lower lanes still make progress.
+ */
+public enum Lane {
+
+    /**
+     * Calls a user waits for, e.g. answerCallbackQuery
+     */
+    INTERACTIVE(16),
+
+    NORMAL(4),
+
+    /**
+     * Broadcasts and other background traffic
+     */
+    BULK(1);
+
+    private final int weight;
+
+    Lane(int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * @return share of the budget while all lanes wait, higher lanes have greater weights
+     */
+    public int getWeight() {
+        return this.weight;
+    }
+
+    /**
+     * @param method Telegram method
+     * @return {@link #INTERACTIVE} for answers to queries, which Telegram expects quickly, otherwise {@link #NORMAL}
+     */
+    public static Lane of(String method) {
+        switch (method) {
+            case "answerCallbackQuery":
+            case "answerInlineQuery":
+            case "answerPreCheckoutQuery":
+            case "answerShippingQuery":
+            case "answerWebAppQuery":
+                return INTERACTIVE;
+            default:
+                return NORMAL;
+        }
+    }
+}
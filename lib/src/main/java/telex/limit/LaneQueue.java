@@ -0,0 +1,71 @@
+package telex.limit;
+
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+
+/**
+ * Waiters queued up in {@link Lane}s, served by smooth weighted round robin, so that higher lanes go first
+ * while lower lanes still make progress. Not thread safe, the owner guards it with its lock.
+ *
+ * @param <T> waiter type
+ */
+final class LaneQueue<T> {
+
+    private final ArrayDeque<T>[] lanes = newLanes();
+
+    private final int[] credits = new int[Lane.values().length];
+
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    private static <T> ArrayDeque<T>[] newLanes() {
+        var lanes = (ArrayDeque<T>[]) new ArrayDeque<?>[Lane.values().length];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ArrayDeque<T>();
+        }
+        return lanes;
+    }
+
+    void add(Lane lane, T waiter) {
+        this.lanes[lane.ordinal()].add(waiter);
+        this.size++;
+    }
+
+    /**
+     * @return next waiter, ties go to the higher lane
+     * @throws NoSuchElementException if the queue is empty
+     */
+    T poll() {
+        var values = Lane.values();
+        int total = 0;
+        int best = -1;
+        for (int i = 0; i < values.length; i++) {
+            if (this.lanes[i].isEmpty()) {
+                continue;
+            }
+            this.credits[i] += values[i].getWeight();
+            total += values[i].getWeight();
+            if (best < 0 || this.credits[i] > this.credits[best]) {
+                best = i;
+            }
+        }
+        if (best < 0) {
+            throw new NoSuchElementException();
+        }
+        this.credits[best] -= total;
+        if (this.lanes[best].size() == 1) {
+            // an idle lane starts afresh
+            this.credits[best] = 0;
+        }
+        this.size--;
+        return this.lanes[best].poll();
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+}
@@ -0,0 +1,383 @@
+package telex.limit;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global and per-chat rate limiter, which delays requests rather than rejecting them
+ * <p>
+ * Every limit is a token bucket kept as a single theoretical arrival time (GCRA), reserved with one CAS and no
+ * lock. A request first waits for a slot of its chat, then for a global slot. While nobody waits, a free global
+ * slot is taken without a lock too. Requests waiting for global slots queue up in their {@link Lane}s under a
+ * lock and are served by weight. Chat buckets are dropped once idle long enough to be full again.
+ *
+ * @see <a href="https://core.telegram.org/bots/faq#my-bot-is-hitting-limits-how-do-i-avoid-this">Bot limits</a>
+ */
+public class RateLimiter {
+
+    private static final long SWEEP_INTERVAL_NANOS = Duration.ofSeconds(1).toNanos();
+
+    private final Bucket global;
+
+    private final Limit privateChatLimit;
+
+    private final Limit groupChatLimit;
+
+    private final ConcurrentHashMap<Object, Bucket> chats = new ConcurrentHashMap<>();
+
+    private final LaneQueue<CompletableFuture<Void>> waiting = new LaneQueue<>();
+
+    /**
+     * Size of {@link #waiting}, read without its lock
+     */
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    private boolean pumpScheduled;
+
+    private final AtomicLong nextSweep = new AtomicLong(System.nanoTime() + SWEEP_INTERVAL_NANOS);
+
+    /**
+     * @param globalLimit      limit of all requests
+     * @param privateChatLimit limit per private chat
+     * @param groupChatLimit   limit per group, supergroup or channel
+     */
+    public RateLimiter(@NotNull Limit globalLimit, @NotNull Limit privateChatLimit, @NotNull Limit groupChatLimit) {
+        Objects.requireNonNull(globalLimit, "globalLimit must be not null");
+        Objects.requireNonNull(privateChatLimit, "privateChatLimit must be not null");
+        Objects.requireNonNull(groupChatLimit, "groupChatLimit must be not null");
+        this.global = new Bucket(globalLimit, System.nanoTime());
+        this.privateChatLimit = privateChatLimit;
+        this.groupChatLimit = groupChatLimit;
+    }
+
+    /**
+     * @return 30 requests per second overall, 1 per second per private chat and 20 per minute per group
+     */
+    public static @NotNull RateLimiter telegramDefaults() {
+        return new RateLimiter(
+                Limit.of(30, Duration.ofSeconds(1)),
+                Limit.of(1, Duration.ofSeconds(1)),
+                Limit.of(20, Duration.ofMinutes(1)));
+    }
+
+    /**
+     * @param chatId chat_id of the request, or null if it has none
+     * @return future completed when the request may be sent
+     */
+    public @NotNull CompletableFuture<Void> acquire(@Nullable Object chatId) {
+        return this.acquire(chatId, Lane.NORMAL);
+    }
+
+    /**
+     * @param chatId chat_id of the request, or null if it has none
+     * @param lane   lane of the request
+     * @return future completed when the request may be sent
+     */
+    public @NotNull CompletableFuture<Void> acquire(@Nullable Object chatId, @NotNull Lane lane) {
+        Objects.requireNonNull(lane, "lane must be not null");
+        long delay = chatId != null ? this.reserveChat(chatId, System.nanoTime()) : 0;
+        if (delay <= 0) {
+            return this.acquireGlobal(lane);
+        }
+        return CompletableFuture.runAsync(() -> {}, delayed(delay))
+                .thenCompose(ignored -> this.acquireGlobal(lane));
+    }
+
+    /**
+     * Take a global slot right away if nobody waits, otherwise queue up in the lane
+     */
+    private CompletableFuture<Void> acquireGlobal(Lane lane) {
+        if (this.waiters.get() == 0 && this.global.tryReserve(System.nanoTime()) == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        var waiter = new CompletableFuture<Void>();
+        synchronized (this.waiting) {
+            this.waiting.add(lane, waiter);
+            this.waiters.incrementAndGet();
+        }
+        this.pump();
+        return waiter;
+    }
+
+    /**
+     * Hand out due global slots to waiting requests, then wake up again when the next slot is due
+     */
+    private void pump() {
+        var ready = new ArrayList<CompletableFuture<Void>>();
+        long wait = 0;
+        synchronized (this.waiting) {
+            while (!this.waiting.isEmpty()) {
+                long delay = this.global.tryReserve(System.nanoTime());
+                if (delay > 0) {
+                    if (!this.pumpScheduled) {
+                        this.pumpScheduled = true;
+                        wait = delay;
+                    }
+                    break;
+                }
+                ready.add(this.waiting.poll());
+                this.waiters.decrementAndGet();
+            }
+        }
+        for (var waiter : ready) {
+            waiter.complete(null);
+        }
+        if (wait > 0) {
+            delayed(wait).execute(() -> {
+                synchronized (this.waiting) {
+                    this.pumpScheduled = false;
+                }
+                this.pump();
+            });
+        }
+    }
+
+    private static Executor delayed(long nanos) {
+        return CompletableFuture.delayedExecutor(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Reserve a slot of the chat. The global slot is taken once it is due, so that requests waiting for
+     * their chats do not hold global slots others could use.
+     *
+     * @param chatId chat_id of the request
+     * @param now    current {@link System#nanoTime()}
+     * @return nanoseconds to wait before queueing up for a global slot
+     */
+    long reserveChat(@NotNull Object chatId, long now) {
+        Objects.requireNonNull(chatId, "chatId must be not null");
+        Object key = toKey(chatId);
+        while (true) {
+            var bucket = this.getBucket(key, now);
+            long slot = bucket.reserve(now);
+            if (slot != Bucket.RETIRED) {
+                this.sweep(now);
+                return slot - now;
+            }
+            this.chats.remove(key, bucket);
+        }
+    }
+
+    /**
+     * Hold requests back after Telegram answered 429 Too Many Requests
+     *
+     * @param chatId     chat_id of the limited request, or null if it has none
+     * @param retryAfter retry_after of the response
+     * @see #penalize(Object, Duration, long)
+     */
+    public void penalize(@Nullable Object chatId, @NotNull Duration retryAfter) {
+        this.penalize(chatId, retryAfter, System.nanoTime());
+    }
+
+    /**
+     * Hold requests back after Telegram answered 429 Too Many Requests. The chat waits out retry_after while
+     * the rest of the bot loses its burst and goes on at the steady rate. Without a chat the whole bot waits.
+     *
+     * @param chatId     chat_id of the limited request, or null if it has none
+     * @param retryAfter retry_after of the response
+     * @param now        current {@link System#nanoTime()}
+     */
+    public void penalize(@Nullable Object chatId, @NotNull Duration retryAfter, long now) {
+        Objects.requireNonNull(retryAfter, "retryAfter must be not null");
+        long until = now + retryAfter.toNanos();
+        if (chatId == null) {
+            this.global.holdUntil(until);
+            return;
+        }
+        this.global.holdUntil(now);
+        Object key = toKey(chatId);
+        while (true) {
+            var bucket = this.getBucket(key, now);
+            if (bucket.holdUntil(until)) {
+                return;
+            }
+            this.chats.remove(key, bucket);
+        }
+    }
+
+    /**
+     * @return chats with buckets which are not full
+     */
+    public int getTrackedChats() {
+        return this.chats.size();
+    }
+
+    private Bucket getBucket(Object key, long now) {
+        var bucket = this.chats.get(key);
+        if (bucket == null) {
+            var created = new Bucket(isGroup(key) ? this.groupChatLimit : this.privateChatLimit, now);
+            bucket = this.chats.putIfAbsent(key, created);
+            if (bucket == null) {
+                bucket = created;
+            }
+        }
+        return bucket;
+    }
+
+    /**
+     * Numeric ids are sent as numbers or strings alike
+     */
+    private static Object toKey(Object chatId) {
+        if (chatId instanceof Number) {
+            return ((Number) chatId).longValue();
+        }
+        var name = chatId.toString();
+        if (name.startsWith("@")) {
+            return name;
+        }
+        try {
+            return Long.parseLong(name);
+        } catch (NumberFormatException ex) {
+            return name;
+        }
+    }
+
+    /**
+     * Negative ids are groups, supergroups and channels, so are @channelusername
+     */
+    private static boolean isGroup(Object key) {
+        if (key instanceof Long) {
+            return (Long) key < 0;
+        }
+        return ((String) key).startsWith("@");
+    }
+
+    /**
+     * Drop full chat buckets, at most once per interval, by whichever caller gets there first
+     */
+    private void sweep(long now) {
+        long next = this.nextSweep.get();
+        if (now - next < 0 || !this.nextSweep.compareAndSet(next, now + SWEEP_INTERVAL_NANOS)) {
+            return;
+        }
+        for (var entry : this.chats.entrySet()) {
+            var bucket = entry.getValue();
+            if (bucket.retireIfFull(now)) {
+                this.chats.remove(entry.getKey(), bucket);
+            }
+        }
+    }
+
+    /**
+     * Permits per period, all of which may be used at once
+     */
+    public static final class Limit {
+
+        private final long interval;
+
+        private final long tolerance;
+
+        private Limit(long interval, long tolerance) {
+            this.interval = interval;
+            this.tolerance = tolerance;
+        }
+
+        /**
+         * @param permits permits per period
+         * @param period  period
+         * @return limit
+         */
+        public static @NotNull Limit of(int permits, @NotNull Duration period) {
+            return of(permits, period, permits);
+        }
+
+        /**
+         * @param permits permits per period
+         * @param period  period
+         * @param burst   permits which may be used at once
+         * @return limit
+         */
+        public static @NotNull Limit of(int permits, @NotNull Duration period, int burst) {
+            Objects.requireNonNull(period, "period must be not null");
+            if (permits < 1 || burst < 1 || period.isNegative() || period.isZero()) {
+                throw new IllegalArgumentException("permits, burst and period must be positive");
+            }
+            long interval = period.toNanos() / permits;
+            return new Limit(interval, interval * (burst - 1));
+        }
+    }
+
+    /**
+     * Theoretical arrival time of the next request, that is when the bucket is full again
+     */
+    private static final class Bucket {
+
+        private static final long RETIRED = Long.MIN_VALUE;
+
+        private final Limit limit;
+
+        private final AtomicLong tat;
+
+        private Bucket(Limit limit, long now) {
+            this.limit = limit;
+            this.tat = new AtomicLong(now - limit.tolerance - limit.interval);
+        }
+
+        /**
+         * @param at earliest time of the request
+         * @return time the request may be sent, or {@link #RETIRED}
+         */
+        private long reserve(long at) {
+            while (true) {
+                long tat = this.tat.get();
+                if (tat == RETIRED) {
+                    return RETIRED;
+                }
+                long slot = Math.max(at, tat - this.limit.tolerance);
+                long next = Math.max(slot, tat) + this.limit.interval;
+                if (this.tat.compareAndSet(tat, next)) {
+                    return slot;
+                }
+            }
+        }
+
+        /**
+         * @param now current time
+         * @return 0 if a slot was reserved, otherwise nanoseconds until the next slot
+         */
+        private long tryReserve(long now) {
+            while (true) {
+                long tat = this.tat.get();
+                long slot = Math.max(now, tat - this.limit.tolerance);
+                if (slot - now > 0) {
+                    return slot - now;
+                }
+                if (this.tat.compareAndSet(tat, Math.max(now, tat) + this.limit.interval)) {
+                    return 0;
+                }
+            }
+        }
+
+        /**
+         * @param slot earliest time of the next request
+         * @return false if the bucket is retired
+         */
+        private boolean holdUntil(long slot) {
+            long next = slot + this.limit.tolerance;
+            while (true) {
+                long tat = this.tat.get();
+                if (tat == RETIRED) {
+                    return false;
+                }
+                if (tat - next >= 0 || this.tat.compareAndSet(tat, next)) {
+                    return true;
+                }
+            }
+        }
+
+        private boolean retireIfFull(long now) {
+            long tat = this.tat.get();
+            return tat != RETIRED && tat - now <= 0 && this.tat.compareAndSet(tat, RETIRED);
+        }
+    }
+}
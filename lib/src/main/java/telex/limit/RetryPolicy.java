@@ -0,0 +1,70 @@
+package telex.limit;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * When to repeat a call answered with 429 Too Many Requests or a 5xx server error
+ * <p>
+ * Flood-limited calls are repeated after the retry_after Telegram asks for. Server errors are repeated
+ * after an exponential, jittered backoff.
+ */
+public class RetryPolicy {
+
+    private final int maxAttempts;
+
+    private final long minBackoffMillis;
+
+    private final long maxBackoffMillis;
+
+    /**
+     * @param maxAttempts attempts including the first one
+     * @param minBackoff  backoff after the first server error
+     * @param maxBackoff  upper bound of the backoff
+     */
+    public RetryPolicy(int maxAttempts, @NotNull Duration minBackoff, @NotNull Duration maxBackoff) {
+        Objects.requireNonNull(minBackoff, "minBackoff must be not null");
+        Objects.requireNonNull(maxBackoff, "maxBackoff must be not null");
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
+        this.maxAttempts = maxAttempts;
+        this.minBackoffMillis = Math.max(1, minBackoff.toMillis());
+        this.maxBackoffMillis = Math.max(this.minBackoffMillis, maxBackoff.toMillis());
+    }
+
+    /**
+     * @return 5 attempts, backing off from 500 ms up to 30 s
+     */
+    public static @NotNull RetryPolicy defaults() {
+        return new RetryPolicy(5, Duration.ofMillis(500), Duration.ofSeconds(30));
+    }
+
+    /**
+     * @param attempt           attempts made so far, starting from 1
+     * @param statusCode        HTTP status of the last attempt
+     * @param retryAfterSeconds retry_after of the response, 0 if none
+     * @return milliseconds to wait before the next attempt, or -1 not to repeat the call
+     */
+    public long getDelayMillis(int attempt, int statusCode, int retryAfterSeconds) {
+        if (attempt >= this.maxAttempts) {
+            return -1;
+        }
+        if (statusCode == 429) {
+            return retryAfterSeconds > 0 ? retryAfterSeconds * 1000L : this.getBackoffMillis(attempt);
+        }
+        if (statusCode >= 500) {
+            return this.getBackoffMillis(attempt);
+        }
+        return -1;
+    }
+
+    private long getBackoffMillis(int attempt) {
+        long backoff = this.minBackoffMillis << Math.min(attempt - 1, 20);
+        backoff = Math.min(this.maxBackoffMillis, backoff);
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+}
@@ -0,0 +1,46 @@
+package telex.support;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Multipart boundary generator
+ * <p>
+ * The random prefix is drawn from {@link SecureRandom} once per generator, each boundary only adds a
+ * {@link ThreadLocalRandom} suffix, so concurrent senders never contend on a shared random source.
+ */
+public class BoundaryGenerator {
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int PREFIX_LENGTH = 16;
+
+    /**
+     * Fixed boundary length in bytes
+     */
+    public static final int BOUNDARY_LENGTH = PREFIX_LENGTH + 16;
+
+    private final byte[] prefix = new byte[PREFIX_LENGTH];
+
+    public BoundaryGenerator() {
+        writeHex(new SecureRandom().nextLong(), this.prefix, 0);
+    }
+
+    /**
+     * @return encoded boundary, {@link #BOUNDARY_LENGTH} bytes of US-ASCII
+     */
+    public byte[] next() {
+        var boundary = Arrays.copyOf(this.prefix, BOUNDARY_LENGTH);
+        writeHex(ThreadLocalRandom.current().nextLong(), boundary, PREFIX_LENGTH);
+        return boundary;
+    }
+
+    private static void writeHex(long value, byte[] bytes, int offset) {
+        for (int i = 15; i >= 0; i--) {
+            bytes[offset + i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+}
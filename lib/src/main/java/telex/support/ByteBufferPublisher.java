@@ -0,0 +1,138 @@
+package telex.support;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Publisher which pulls buffers from an iterator on demand, one iterator per subscription
+ * <p>
+ * The iterator is closed on completion, error and cancellation when it implements {@link Closeable}.
+ */
+public class ByteBufferPublisher implements Flow.Publisher<ByteBuffer> {
+
+    private final Supplier<? extends Iterator<ByteBuffer>> iteratorSupplier;
+
+    public ByteBufferPublisher(@NotNull Supplier<? extends Iterator<ByteBuffer>> iteratorSupplier) {
+        Objects.requireNonNull(iteratorSupplier, "iteratorSupplier must be not null");
+        this.iteratorSupplier = iteratorSupplier;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber must be not null");
+        Iterator<ByteBuffer> iterator;
+        try {
+            iterator = this.iteratorSupplier.get();
+        } catch (Throwable ex) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(ex);
+            return;
+        }
+        subscriber.onSubscribe(new IteratorSubscription(subscriber, iterator));
+    }
+
+    private static final class IteratorSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final Iterator<ByteBuffer> iterator;
+
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean terminated = false;
+
+        private IteratorSubscription(Flow.Subscriber<? super ByteBuffer> subscriber, Iterator<ByteBuffer> iterator) {
+            this.subscriber = subscriber;
+            this.iterator = iterator;
+        }
+
+        @Override
+        public void request(long n) {
+            if (this.terminated) {
+                return;
+            }
+            if (n <= 0) {
+                this.terminate();
+                this.subscriber.onError(new IllegalArgumentException("non-positive subscription request: " + n));
+                return;
+            }
+            this.demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            this.drain();
+        }
+
+        @Override
+        public void cancel() {
+            this.terminate();
+        }
+
+        /**
+         * Emit as many buffers as requested, serialized by the work-in-progress counter
+         */
+        private void drain() {
+            if (this.wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                long requested = this.demand.get();
+                long emitted = 0;
+                while (emitted != requested) {
+                    if (this.terminated) {
+                        return;
+                    }
+                    ByteBuffer next;
+                    try {
+                        if (!this.iterator.hasNext()) {
+                            this.terminate();
+                            this.subscriber.onComplete();
+                            return;
+                        }
+                        next = this.iterator.next();
+                    } catch (Throwable ex) {
+                        this.terminate();
+                        this.subscriber.onError(ex);
+                        return;
+                    }
+                    this.subscriber.onNext(next);
+                    emitted++;
+                }
+                if (emitted > 0 && requested != Long.MAX_VALUE) {
+                    this.demand.addAndGet(-emitted);
+                }
+                missed = this.wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void terminate() {
+            if (this.terminated) {
+                return;
+            }
+            this.terminated = true;
+            if (this.iterator instanceof Closeable) {
+                try {
+                    ((Closeable) this.iterator).close();
+                } catch (IOException | UncheckedIOException ignored) {
+                    // nothing left to report to
+                }
+            }
+        }
+    }
+}
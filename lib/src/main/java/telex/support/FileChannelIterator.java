@@ -0,0 +1,101 @@
+package telex.support;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Iterate a file as read-only memory-mapped regions, no heap copy is made
+ * <p>
+ * The channel is closed once the file is drained, as soon as {@link #hasNext()} returns false, empty files
+ * included.
+ */
+public class FileChannelIterator implements Iterator<ByteBuffer>, Closeable {
+
+    private static final long REGION_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+
+    private final long size;
+
+    private long position = 0;
+
+    public FileChannelIterator(@NotNull Path path) {
+        this(path, -1);
+    }
+
+    /**
+     * @param path file
+     * @param size bytes to iterate, e.g. the length a Content-Length was computed from, or -1 for the whole file
+     * @throws UncheckedIOException if the file can't be opened or is shorter than size
+     */
+    public FileChannelIterator(@NotNull Path path, long size) {
+        Objects.requireNonNull(path, "path must be not null");
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        try {
+            long fileSize = this.channel.size();
+            if (fileSize < size) {
+                throw new IOException("file got shorter since the body was built, " + fileSize + " of " + size
+                                      + " bytes: " + path);
+            }
+            this.size = size < 0 ? fileSize : size;
+        } catch (IOException ex) {
+            this.close();
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.position < this.size) {
+            return true;
+        }
+        this.close();
+        return false;
+    }
+
+    @Override
+    public ByteBuffer next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException("file is drained");
+        }
+        long length = Math.min(REGION_SIZE, this.size - this.position);
+        ByteBuffer region;
+        try {
+            region = this.channel.map(FileChannel.MapMode.READ_ONLY, this.position, length);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        this.position += length;
+        if (this.position >= this.size) {
+            this.close();
+        }
+        return region;
+    }
+
+    boolean isOpen() {
+        return this.channel.isOpen();
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.channel.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package telex.support;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * file_ids of uploaded files by SHA-256 of their content, so that a file is uploaded once per bot
+ * <p>
+ * Digests are remembered per path with the size and modification time of the file, the content is hashed
+ * again only when they change. Both maps are kept in an append-only index file mapped into memory, later
+ * records win. The index is compacted when it is opened. It survives a crash of the process, but not
+ * necessarily a power loss, after which it should be deleted. A file_id is valid for the bot which uploaded
+ * the file only, so bots must not share an index.
+ */
+public class FileIdCache implements Closeable {
+
+    private static final byte PATH_RECORD = 1;
+
+    private static final byte FILE_ID_RECORD = 2;
+
+    private static final int DIGEST_LENGTH = 32;
+
+    private static final int MIN_MAPPED_SIZE = 64 * 1024;
+
+    private final ConcurrentHashMap<String, PathEntry> paths;
+
+    private final ConcurrentHashMap<String, String> fileIds;
+
+    private final FileChannel channel;
+
+    private final @Nullable Executor executor;
+
+    private MappedByteBuffer index;
+
+    private int position;
+
+    private FileIdCache(ConcurrentHashMap<String, PathEntry> paths, ConcurrentHashMap<String, String> fileIds,
+                        FileChannel channel, @Nullable Executor executor, MappedByteBuffer index, int position) {
+        this.paths = paths;
+        this.fileIds = fileIds;
+        this.channel = channel;
+        this.executor = executor;
+        this.index = index;
+        this.position = position;
+    }
+
+    /**
+     * @param indexFile index file, created if it does not exist
+     * @return cache with the entries of the index, hashing on the default executor of {@link CompletableFuture}
+     */
+    public static @NotNull FileIdCache open(@NotNull Path indexFile) {
+        return open(indexFile, null);
+    }
+
+    /**
+     * @param indexFile index file, created if it does not exist
+     * @param executor  executor to hash files on, or null for the default executor of {@link CompletableFuture}
+     * @return cache with the entries of the index
+     */
+    public static @NotNull FileIdCache open(@NotNull Path indexFile, @Nullable Executor executor) {
+        Objects.requireNonNull(indexFile, "indexFile must be not null");
+        var paths = new ConcurrentHashMap<String, PathEntry>();
+        var fileIds = new ConcurrentHashMap<String, String>();
+        try {
+            if (Files.exists(indexFile)) {
+                read(ByteBuffer.wrap(Files.readAllBytes(indexFile)), paths, fileIds);
+            }
+            int length = compact(indexFile, paths, fileIds);
+            var channel = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            var index = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(MIN_MAPPED_SIZE, 2L * length));
+            return new FileIdCache(paths, fileIds, channel, executor, index, length);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * @param file file to upload
+     * @return hex SHA-256 of the content
+     */
+    public @NotNull String digest(@NotNull Path file) {
+        Objects.requireNonNull(file, "file must be not null");
+        try {
+            var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            var key = file.toAbsolutePath().normalize().toString();
+            var digest = this.getDigest(key, attributes);
+            return digest != null ? digest : this.hash(file, key, attributes);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * @param file file to upload
+     * @return hex SHA-256 of the content, completed right away if the file did not change since it was hashed,
+     * otherwise hashed on the executor of the cache
+     */
+    public @NotNull CompletableFuture<String> digestAsync(@NotNull Path file) {
+        Objects.requireNonNull(file, "file must be not null");
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException ex) {
+            return CompletableFuture.failedFuture(new UncheckedIOException(ex));
+        }
+        var key = file.toAbsolutePath().normalize().toString();
+        var digest = this.getDigest(key, attributes);
+        if (digest != null) {
+            return CompletableFuture.completedFuture(digest);
+        }
+        Supplier<String> hash = () -> {
+            try {
+                return this.hash(file, key, attributes);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        };
+        return this.executor == null
+                ? CompletableFuture.supplyAsync(hash)
+                : CompletableFuture.supplyAsync(hash, this.executor);
+    }
+
+    private @Nullable String getDigest(String key, BasicFileAttributes attributes) {
+        var entry = this.paths.get(key);
+        if (entry != null && entry.size == attributes.size()
+            && entry.modified == attributes.lastModifiedTime().toMillis()) {
+            return entry.digest;
+        }
+        return null;
+    }
+
+    private String hash(Path file, String key, BasicFileAttributes attributes) throws IOException {
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        var digest = hash(file);
+        this.paths.put(key, new PathEntry(size, modified, digest));
+        this.append(PATH_RECORD, pathRecord(key, size, modified, digest));
+        return digest;
+    }
+
+    /**
+     * @param digest digest of the content
+     * @return file_id, or null if the content was not uploaded
+     */
+    public @Nullable String getFileId(@NotNull String digest) {
+        Objects.requireNonNull(digest, "digest must be not null");
+        return this.fileIds.get(digest);
+    }
+
+    /**
+     * @param digest digest of the content
+     * @param fileId file_id Telegram returned for the content
+     */
+    public void putFileId(@NotNull String digest, @NotNull String fileId) {
+        Objects.requireNonNull(digest, "digest must be not null");
+        Objects.requireNonNull(fileId, "fileId must be not null");
+        if (fileId.equals(this.fileIds.put(digest, fileId))) {
+            return;
+        }
+        this.append(FILE_ID_RECORD, fileIdRecord(digest, fileId));
+    }
+
+    /**
+     * @return cached file_ids
+     */
+    public int size() {
+        return this.fileIds.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            this.index.force();
+            this.channel.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Read records up to the first empty or incomplete one
+     */
+    private static void read(ByteBuffer buffer, Map<String, PathEntry> paths, Map<String, String> fileIds) {
+        while (buffer.remaining() >= Integer.BYTES) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            var record = buffer.slice();
+            record.limit(length);
+            buffer.position(start + Integer.BYTES + length);
+            byte type = record.get();
+            if (type == PATH_RECORD) {
+                long size = record.getLong();
+                long modified = record.getLong();
+                var path = readString(record);
+                paths.put(path, new PathEntry(size, modified, readDigest(record)));
+            } else if (type == FILE_ID_RECORD) {
+                var digest = readDigest(record);
+                fileIds.put(digest, readString(record));
+            }
+        }
+    }
+
+    /**
+     * Rewrite the index with the live entries only
+     *
+     * @return length of the index
+     */
+    private static int compact(Path indexFile, Map<String, PathEntry> paths, Map<String, String> fileIds)
+            throws IOException {
+        var temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        int length = 0;
+        try (var out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (var entry : paths.entrySet()) {
+                var value = entry.getValue();
+                length += write(out, PATH_RECORD, pathRecord(entry.getKey(), value.size, value.modified, value.digest));
+            }
+            for (var entry : fileIds.entrySet()) {
+                length += write(out, FILE_ID_RECORD, fileIdRecord(entry.getKey(), entry.getValue()));
+            }
+        }
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return length;
+    }
+
+    private static int write(FileChannel out, byte type, byte[] record) throws IOException {
+        var buffer = ByteBuffer.allocate(Integer.BYTES + 1 + record.length);
+        buffer.putInt(1 + record.length).put(type).put(record).flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        return buffer.capacity();
+    }
+
+    /**
+     * The length is written last, so a record cut short by a crash of the process reads as the end of the
+     * index, the page cache keeps what the process wrote. A mapping gives no order of writes to disk, so a
+     * power loss may persist the length without its record.
+     */
+    private synchronized void append(byte type, byte[] record) {
+        int length = 1 + record.length;
+        try {
+            if (this.position + Integer.BYTES + length > this.index.capacity()) {
+                long size = Math.max((long) this.index.capacity() * 2, this.position + Integer.BYTES + length);
+                this.index = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        this.index.position(this.position + Integer.BYTES);
+        this.index.put(type).put(record);
+        this.index.putInt(this.position, length);
+        this.position += Integer.BYTES + length;
+    }
+
+    private static byte[] pathRecord(String path, long size, long modified, String digest) {
+        var name = path.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(2 * Long.BYTES + Short.BYTES + name.length + DIGEST_LENGTH)
+                .putLong(size)
+                .putLong(modified)
+                .putShort((short) name.length)
+                .put(name)
+                .put(fromHex(digest))
+                .array();
+    }
+
+    private static byte[] fileIdRecord(String digest, String fileId) {
+        var id = fileId.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(DIGEST_LENGTH + Short.BYTES + id.length)
+                .put(fromHex(digest))
+                .putShort((short) id.length)
+                .put(id)
+                .array();
+    }
+
+    private static String readString(ByteBuffer record) {
+        var bytes = new byte[record.getShort() & 0xFFFF];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readDigest(ByteBuffer record) {
+        var bytes = new byte[DIGEST_LENGTH];
+        record.get(bytes);
+        return toHex(bytes);
+    }
+
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        try (var iterator = new FileChannelIterator(file)) {
+            while (iterator.hasNext()) {
+                digest.update(iterator.next());
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static String toHex(byte[] bytes) {
+        var hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            hex[2 * i + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+
+    private static byte[] fromHex(String hex) {
+        var bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex, 2 * i, 2 * i + 2, 16);
+        }
+        return bytes;
+    }
+
+    private static final class PathEntry {
+
+        private final long size;
+
+        private final long modified;
+
+        private final String digest;
+
+        private PathEntry(long size, long modified, String digest) {
+            this.size = size;
+            this.modified = modified;
+            this.digest = digest;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package telex.support;
+
+/**
+ * Malformed JSON, or JSON of another type than the one read
+ */
+public class JsonException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public JsonException(String message) {
+        super(message);
+    }
+
+    public JsonException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,500 @@
+package telex.support;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Pull parser reading JSON tokens straight from UTF-8 bytes
+ * <p>
+ * Nothing is decoded until it is read, skipped values are only scanned.
+ */
+public class JsonReader {
+
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int NONEMPTY_OBJECT = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private final byte[] bytes;
+
+    private final int end;
+
+    private int position;
+
+    private int[] scopes = new int[16];
+
+    private int depth = 1;
+
+    private Token peeked = null;
+
+    public JsonReader(@NotNull byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    public JsonReader(@NotNull byte[] bytes, int offset, int end) {
+        Objects.requireNonNull(bytes, "bytes must be not null");
+        Objects.checkFromToIndex(offset, end, bytes.length);
+        this.bytes = bytes;
+        this.position = offset;
+        this.end = end;
+        this.scopes[0] = EMPTY_DOCUMENT;
+    }
+
+    public @NotNull Token peek() {
+        if (this.peeked != null) {
+            return this.peeked;
+        }
+        int scope = this.scopes[this.depth - 1];
+        switch (scope) {
+            case EMPTY_ARRAY:
+            case NONEMPTY_ARRAY: {
+                this.scopes[this.depth - 1] = NONEMPTY_ARRAY;
+                int c = this.nextNonWhitespace();
+                if (c == ']') {
+                    return this.peeked = Token.END_ARRAY;
+                }
+                if (scope == NONEMPTY_ARRAY) {
+                    this.expect(',');
+                    this.nextNonWhitespace();
+                }
+                return this.peeked = this.peekValue();
+            }
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT: {
+                this.scopes[this.depth - 1] = DANGLING_NAME;
+                int c = this.nextNonWhitespace();
+                if (c == '}') {
+                    return this.peeked = Token.END_OBJECT;
+                }
+                if (scope == NONEMPTY_OBJECT) {
+                    this.expect(',');
+                    c = this.nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw this.syntaxError("expected name");
+                }
+                return this.peeked = Token.NAME;
+            }
+            case DANGLING_NAME:
+                this.scopes[this.depth - 1] = NONEMPTY_OBJECT;
+                this.nextNonWhitespace();
+                this.expect(':');
+                this.nextNonWhitespace();
+                return this.peeked = this.peekValue();
+            case EMPTY_DOCUMENT:
+                this.scopes[this.depth - 1] = NONEMPTY_DOCUMENT;
+                this.nextNonWhitespace();
+                return this.peeked = this.peekValue();
+            default:
+                if (this.nextNonWhitespace() != -1) {
+                    throw this.syntaxError("expected end of document");
+                }
+                return this.peeked = Token.END_DOCUMENT;
+        }
+    }
+
+    private Token peekValue() {
+        int c = this.position < this.end ? this.bytes[this.position] : -1;
+        switch (c) {
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case '"':
+                return Token.STRING;
+            case 't':
+            case 'f':
+                return Token.BOOLEAN;
+            case 'n':
+                return Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return Token.NUMBER;
+                }
+                throw this.syntaxError("expected value");
+        }
+    }
+
+    public boolean hasNext() {
+        var token = this.peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public void beginObject() {
+        this.consume(Token.BEGIN_OBJECT);
+        this.push(EMPTY_OBJECT);
+    }
+
+    public void endObject() {
+        this.consume(Token.END_OBJECT);
+        this.depth--;
+    }
+
+    public void beginArray() {
+        this.consume(Token.BEGIN_ARRAY);
+        this.push(EMPTY_ARRAY);
+    }
+
+    public void endArray() {
+        this.consume(Token.END_ARRAY);
+        this.depth--;
+    }
+
+    public @NotNull String nextName() {
+        this.require(Token.NAME);
+        this.peeked = null;
+        return this.readString();
+    }
+
+    /**
+     * Consume the next name and compare it without decoding
+     *
+     * @param name expected name
+     * @return whether the consumed name is the expected one
+     */
+    public boolean nextNameEquals(@NotNull String name) {
+        this.require(Token.NAME);
+        this.peeked = null;
+        int start = this.position + 1;
+        int length = name.length();
+        boolean equal = start + length < this.end && this.bytes[start + length] == '"';
+        for (int i = 0; equal && i < length; i++) {
+            char c = name.charAt(i);
+            equal = c < 0x80 && c != '\\' && this.bytes[start + i] == c;
+        }
+        if (equal) {
+            this.position = start + length + 1;
+            return true;
+        }
+        return name.equals(this.readString());
+    }
+
+    public @NotNull String nextString() {
+        this.consume(Token.STRING);
+        return this.readString();
+    }
+
+    public boolean nextBoolean() {
+        this.consume(Token.BOOLEAN);
+        if (this.matches("true")) {
+            return true;
+        }
+        if (this.matches("false")) {
+            return false;
+        }
+        throw this.syntaxError("expected boolean");
+    }
+
+    public void nextNull() {
+        this.consume(Token.NULL);
+        if (!this.matches("null")) {
+            throw this.syntaxError("expected null");
+        }
+    }
+
+    public long nextLong() {
+        this.require(Token.NUMBER);
+        int start = this.position;
+        int numberEnd = this.scanNumber(start);
+        boolean negative = this.bytes[start] == '-';
+        long value = 0;
+        for (int i = negative ? start + 1 : start; i < numberEnd; i++) {
+            int digit = this.bytes[i] - '0';
+            if (digit < 0 || digit > 9 || value < (Long.MIN_VALUE + digit) / 10) {
+                // fraction, exponent or overflow
+                return (long) this.nextDouble();
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative && value == Long.MIN_VALUE) {
+            return (long) this.nextDouble();
+        }
+        this.peeked = null;
+        this.position = numberEnd;
+        return negative ? value : -value;
+    }
+
+    public double nextDouble() {
+        this.consume(Token.NUMBER);
+        int start = this.position;
+        this.position = this.scanNumber(start);
+        try {
+            return Double.parseDouble(new String(this.bytes, start, this.position - start, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException ex) {
+            throw new JsonException("malformed number at offset " + start, ex);
+        }
+    }
+
+    /**
+     * Skip the next value, nested values are scanned without being tokenized
+     */
+    public void skipValue() {
+        var token = this.peek();
+        switch (token) {
+            case NAME:
+                this.nextName();
+                this.skipValue();
+                return;
+            case BEGIN_OBJECT:
+            case BEGIN_ARRAY:
+                this.peeked = null;
+                this.position = this.scanContainer(this.position);
+                return;
+            case STRING:
+                this.peeked = null;
+                this.position = this.scanString(this.position);
+                return;
+            case NUMBER:
+                this.peeked = null;
+                this.position = this.scanNumber(this.position);
+                return;
+            case BOOLEAN:
+                this.nextBoolean();
+                return;
+            case NULL:
+                this.nextNull();
+                return;
+            default:
+                throw new JsonException("no value to skip at offset " + this.position + ", found " + token);
+        }
+    }
+
+    /**
+     * @return offset of the next value once peeked, or of the next byte to read
+     */
+    public int getPosition() {
+        return this.position;
+    }
+
+    byte[] bytes() {
+        return this.bytes;
+    }
+
+    private int scanContainer(int start) {
+        int nesting = 0;
+        int i = start;
+        while (i < this.end) {
+            byte c = this.bytes[i];
+            if (c == '"') {
+                i = this.scanString(i);
+                continue;
+            }
+            if (c == '{' || c == '[') {
+                nesting++;
+            } else if (c == '}' || c == ']') {
+                if (--nesting == 0) {
+                    return i + 1;
+                }
+            }
+            i++;
+        }
+        throw new JsonException("unterminated container at offset " + start);
+    }
+
+    private int scanString(int start) {
+        for (int i = start + 1; i < this.end; i++) {
+            byte c = this.bytes[i];
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i + 1;
+            }
+        }
+        throw new JsonException("unterminated string at offset " + start);
+    }
+
+    private int scanNumber(int start) {
+        int i = start;
+        while (i < this.end) {
+            byte c = this.bytes[i];
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Decode the string starting at the current position, which holds its opening quote
+     */
+    private String readString() {
+        int start = this.position + 1;
+        int i = start;
+        while (i < this.end) {
+            byte c = this.bytes[i];
+            if (c == '"') {
+                this.position = i + 1;
+                return new String(this.bytes, start, i - start, StandardCharsets.UTF_8);
+            }
+            if (c == '\\') {
+                return this.readEscapedString(start, i);
+            }
+            i++;
+        }
+        throw new JsonException("unterminated string at offset " + this.position);
+    }
+
+    private String readEscapedString(int start, int escape) {
+        var decoded = Arrays.copyOfRange(this.bytes, start, escape + 16);
+        int length = escape - start;
+        int i = escape;
+        while (i < this.end) {
+            byte c = this.bytes[i++];
+            if (c == '"') {
+                this.position = i;
+                return new String(decoded, 0, length, StandardCharsets.UTF_8);
+            }
+            if (length + 4 > decoded.length) {
+                decoded = Arrays.copyOf(decoded, decoded.length << 1);
+            }
+            if (c != '\\') {
+                decoded[length++] = c;
+                continue;
+            }
+            if (i >= this.end) {
+                break;
+            }
+            byte escaped = this.bytes[i++];
+            switch (escaped) {
+                case 'n':
+                    decoded[length++] = '\n';
+                    break;
+                case 'r':
+                    decoded[length++] = '\r';
+                    break;
+                case 't':
+                    decoded[length++] = '\t';
+                    break;
+                case 'b':
+                    decoded[length++] = '\b';
+                    break;
+                case 'f':
+                    decoded[length++] = '\f';
+                    break;
+                case 'u': {
+                    int codePoint = this.readHex(i);
+                    i += 4;
+                    if (Character.isHighSurrogate((char) codePoint) && i + 6 <= this.end
+                        && this.bytes[i] == '\\' && this.bytes[i + 1] == 'u') {
+                        int low = this.readHex(i + 2);
+                        if (Character.isLowSurrogate((char) low)) {
+                            codePoint = Character.toCodePoint((char) codePoint, (char) low);
+                            i += 6;
+                        }
+                    }
+                    length = writeUtf8(decoded, length, codePoint);
+                    break;
+                }
+                default:
+                    // \" \\ \/
+                    decoded[length++] = escaped;
+            }
+        }
+        throw new JsonException("unterminated string at offset " + (start - 1));
+    }
+
+    private int readHex(int offset) {
+        if (offset + 4 > this.end) {
+            throw new JsonException("malformed unicode escape at offset " + offset);
+        }
+        int value = 0;
+        for (int i = offset; i < offset + 4; i++) {
+            int digit = Character.digit(this.bytes[i], 16);
+            if (digit < 0) {
+                throw new JsonException("malformed unicode escape at offset " + offset);
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private static int writeUtf8(byte[] bytes, int offset, int codePoint) {
+        if (codePoint < 0x80) {
+            bytes[offset++] = (byte) codePoint;
+        } else if (codePoint < 0x800) {
+            bytes[offset++] = (byte) (0xC0 | (codePoint >> 6));
+            bytes[offset++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else if (codePoint < 0x10000) {
+            bytes[offset++] = (byte) (0xE0 | (codePoint >> 12));
+            bytes[offset++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            bytes[offset++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else {
+            bytes[offset++] = (byte) (0xF0 | (codePoint >> 18));
+            bytes[offset++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            bytes[offset++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            bytes[offset++] = (byte) (0x80 | (codePoint & 0x3F));
+        }
+        return offset;
+    }
+
+    private boolean matches(String literal) {
+        int length = literal.length();
+        if (this.position + length > this.end) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (this.bytes[this.position + i] != literal.charAt(i)) {
+                return false;
+            }
+        }
+        this.position += length;
+        return true;
+    }
+
+    private int nextNonWhitespace() {
+        while (this.position < this.end) {
+            byte c = this.bytes[this.position];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+            this.position++;
+        }
+        return -1;
+    }
+
+    private void expect(char c) {
+        if (this.position >= this.end || this.bytes[this.position] != c) {
+            throw this.syntaxError("expected '" + c + "'");
+        }
+        this.position++;
+    }
+
+    private void require(Token token) {
+        var peeked = this.peek();
+        if (peeked != token) {
+            throw new JsonException("expected " + token + " but was " + peeked + " at offset " + this.position);
+        }
+    }
+
+    private void consume(Token token) {
+        this.require(token);
+        this.peeked = null;
+        if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY
+            || token == Token.END_OBJECT || token == Token.END_ARRAY) {
+            this.position++;
+        }
+    }
+
+    private void push(int scope) {
+        if (this.depth == this.scopes.length) {
+            this.scopes = Arrays.copyOf(this.scopes, this.depth << 1);
+        }
+        this.scopes[this.depth++] = scope;
+    }
+
+    private JsonException syntaxError(String message) {
+        return new JsonException(message + " at offset " + this.position);
+    }
+}
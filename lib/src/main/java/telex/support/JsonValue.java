@@ -0,0 +1,283 @@
+package telex.support;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Lazy view of a JSON value inside a byte array
+ * <p>
+ * Accessors scan the bytes on demand, nothing is decoded or materialized beyond what they return.
+ */
+public final class JsonValue {
+
+    public enum Type {
+        OBJECT, ARRAY, STRING, NUMBER, BOOLEAN, NULL
+    }
+
+    private final byte[] bytes;
+
+    private final int start;
+
+    private final int end;
+
+    private JsonValue(byte[] bytes, int start, int end) {
+        this.bytes = bytes;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * @param bytes UTF-8 JSON document, not copied
+     * @return document value
+     */
+    public static @NotNull JsonValue parse(@NotNull byte[] bytes) {
+        return parse(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @param bytes  UTF-8 JSON, not copied
+     * @param offset document offset
+     * @param end    document end, exclusive
+     * @return document value
+     */
+    public static @NotNull JsonValue parse(@NotNull byte[] bytes, int offset, int end) {
+        Objects.requireNonNull(bytes, "bytes must be not null");
+        var reader = new JsonReader(bytes, offset, end);
+        return next(reader);
+    }
+
+    /**
+     * Take the next value of a reader as a view, skipping it in the reader
+     *
+     * @param reader reader positioned before a value
+     * @return value view
+     */
+    public static @NotNull JsonValue next(@NotNull JsonReader reader) {
+        reader.peek();
+        int start = reader.getPosition();
+        reader.skipValue();
+        return new JsonValue(reader.bytes(), start, reader.getPosition());
+    }
+
+    public @NotNull Type getType() {
+        switch (this.bytes[this.start]) {
+            case '{':
+                return Type.OBJECT;
+            case '[':
+                return Type.ARRAY;
+            case '"':
+                return Type.STRING;
+            case 't':
+            case 'f':
+                return Type.BOOLEAN;
+            case 'n':
+                return Type.NULL;
+            default:
+                return Type.NUMBER;
+        }
+    }
+
+    public boolean isNull() {
+        return this.getType() == Type.NULL;
+    }
+
+    /**
+     * @param name member name
+     * @return member value, or null if this is not an object or has no such member
+     */
+    public @Nullable JsonValue get(@NotNull String name) {
+        Objects.requireNonNull(name, "name must be not null");
+        if (this.getType() != Type.OBJECT) {
+            return null;
+        }
+        var reader = this.reader();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextNameEquals(name)) {
+                return next(reader);
+            }
+            reader.skipValue();
+        }
+        return null;
+    }
+
+    /**
+     * @param index element index
+     * @return element value, or null if this is not an array or is too short
+     */
+    public @Nullable JsonValue get(int index) {
+        if (this.getType() != Type.ARRAY) {
+            return null;
+        }
+        var reader = this.reader();
+        reader.beginArray();
+        for (int i = 0; reader.hasNext(); i++) {
+            if (i == index) {
+                return next(reader);
+            }
+            reader.skipValue();
+        }
+        return null;
+    }
+
+    /**
+     * @return number of array elements or object members, 0 for other values
+     */
+    public int size() {
+        var type = this.getType();
+        if (type != Type.OBJECT && type != Type.ARRAY) {
+            return 0;
+        }
+        var reader = this.reader();
+        int size = 0;
+        if (type == Type.OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.skipValue();
+                size++;
+            }
+        } else {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                reader.skipValue();
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return array elements, empty if this is not an array
+     */
+    public @NotNull List<JsonValue> elements() {
+        if (this.getType() != Type.ARRAY) {
+            return List.of();
+        }
+        var elements = new ArrayList<JsonValue>();
+        var reader = this.reader();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            elements.add(next(reader));
+        }
+        return elements;
+    }
+
+    /**
+     * @param action called with each member of an object
+     */
+    public void forEach(@NotNull BiConsumer<String, JsonValue> action) {
+        Objects.requireNonNull(action, "action must be not null");
+        if (this.getType() != Type.OBJECT) {
+            return;
+        }
+        var reader = this.reader();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            var name = reader.nextName();
+            action.accept(name, next(reader));
+        }
+    }
+
+    public @NotNull String asString() {
+        return this.reader().nextString();
+    }
+
+    public long asLong() {
+        return this.reader().nextLong();
+    }
+
+    public int asInt() {
+        return Math.toIntExact(this.asLong());
+    }
+
+    public double asDouble() {
+        return this.reader().nextDouble();
+    }
+
+    public boolean asBoolean() {
+        return this.reader().nextBoolean();
+    }
+
+    /**
+     * @param name member name
+     * @return string member, or null if absent or null
+     */
+    public @Nullable String getString(@NotNull String name) {
+        var value = this.get(name);
+        return value == null || value.isNull() ? null : value.asString();
+    }
+
+    /**
+     * @param name         member name
+     * @param defaultValue value if absent or null
+     * @return number member
+     */
+    public long getLong(@NotNull String name, long defaultValue) {
+        var value = this.get(name);
+        return value == null || value.isNull() ? defaultValue : value.asLong();
+    }
+
+    /**
+     * @param name         member name
+     * @param defaultValue value if absent or null
+     * @return boolean member
+     */
+    public boolean getBoolean(@NotNull String name, boolean defaultValue) {
+        var value = this.get(name);
+        return value == null || value.isNull() ? defaultValue : value.asBoolean();
+    }
+
+    /**
+     * @return the raw JSON bytes of this value
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOfRange(this.bytes, this.start, this.end);
+    }
+
+    /**
+     * @param json writer receiving the raw JSON of this value
+     */
+    public void writeTo(@NotNull JsonWriter json) {
+        json.writeRaw(this.bytes, this.start, this.end - this.start);
+    }
+
+    private JsonReader reader() {
+        return new JsonReader(this.bytes, this.start, this.end);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof JsonValue)) {
+            return false;
+        }
+        var other = (JsonValue) o;
+        return Arrays.equals(this.bytes, this.start, this.end, other.bytes, other.start, other.end);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = this.start; i < this.end; i++) {
+            hash = 31 * hash + this.bytes[i];
+        }
+        return hash;
+    }
+
+    /**
+     * @return the raw JSON of this value
+     */
+    @Override
+    public String toString() {
+        return new String(this.bytes, this.start, this.end - this.start, StandardCharsets.UTF_8);
+    }
+}
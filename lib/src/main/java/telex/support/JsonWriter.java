@@ -0,0 +1,331 @@
+package telex.support;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Streaming JSON encoder writing UTF-8 straight into a reusable byte buffer
+ * <p>
+ * Maps, collections and arrays are written as JSON objects and arrays, numbers and booleans as JSON
+ * literals, {@link JsonValue}s as their raw JSON, every other value as a JSON string of its
+ * {@link String#valueOf(Object)}.
+ */
+public class JsonWriter {
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buffer;
+
+    private int length = 0;
+
+    public JsonWriter() {
+        this(256);
+    }
+
+    public JsonWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    /**
+     * @param value payload value
+     * @return whether the value is written as a JSON object or array
+     */
+    public static boolean isStructured(@Nullable Object value) {
+        return value instanceof Map || value instanceof Collection || value instanceof JsonValue
+               || (value != null && value.getClass().isArray());
+    }
+
+    public @NotNull JsonWriter writeValue(@Nullable Object value) {
+        if (value == null) {
+            this.writeRaw(NULL);
+        } else if (value instanceof CharSequence) {
+            this.writeString((CharSequence) value);
+        } else if (value instanceof Boolean) {
+            this.writeRaw((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            this.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Double) {
+            this.writeNumber((double) (Double) value);
+        } else if (value instanceof Float) {
+            this.writeNumber((float) (Float) value);
+        } else if (value instanceof Number) {
+            this.writeAscii(value.toString());
+        } else if (value instanceof JsonValue) {
+            ((JsonValue) value).writeTo(this);
+        } else if (value instanceof Map) {
+            this.writeObject((Map<?, ?>) value);
+        } else if (value instanceof Collection) {
+            this.writeArray((Collection<?>) value);
+        } else if (value.getClass().isArray()) {
+            this.writeArray(value);
+        } else {
+            this.writeString(String.valueOf(value));
+        }
+        return this;
+    }
+
+    public @NotNull JsonWriter writeObject(@NotNull Map<?, ?> map) {
+        this.write('{');
+        boolean first = true;
+        for (var entry : map.entrySet()) {
+            if (!first) {
+                this.write(',');
+            }
+            first = false;
+            this.writeString(String.valueOf(entry.getKey()));
+            this.write(':');
+            this.writeValue(entry.getValue());
+        }
+        this.write('}');
+        return this;
+    }
+
+    public @NotNull JsonWriter writeArray(@NotNull Collection<?> collection) {
+        this.write('[');
+        boolean first = true;
+        for (var element : collection) {
+            if (!first) {
+                this.write(',');
+            }
+            first = false;
+            this.writeValue(element);
+        }
+        this.write(']');
+        return this;
+    }
+
+    private void writeArray(Object array) {
+        this.write('[');
+        if (array instanceof long[]) {
+            var longs = (long[]) array;
+            for (int i = 0; i < longs.length; i++) {
+                if (i > 0) {
+                    this.write(',');
+                }
+                this.writeNumber(longs[i]);
+            }
+        } else if (array instanceof int[]) {
+            var ints = (int[]) array;
+            for (int i = 0; i < ints.length; i++) {
+                if (i > 0) {
+                    this.write(',');
+                }
+                this.writeNumber(ints[i]);
+            }
+        } else if (array instanceof Object[]) {
+            var objects = (Object[]) array;
+            for (int i = 0; i < objects.length; i++) {
+                if (i > 0) {
+                    this.write(',');
+                }
+                this.writeValue(objects[i]);
+            }
+        } else {
+            int length = Array.getLength(array);
+            for (int i = 0; i < length; i++) {
+                if (i > 0) {
+                    this.write(',');
+                }
+                this.writeValue(Array.get(array, i));
+            }
+        }
+        this.write(']');
+    }
+
+    public @NotNull JsonWriter writeNumber(long value) {
+        if (value == Long.MIN_VALUE) {
+            this.writeAscii("-9223372036854775808");
+            return this;
+        }
+        if (value < 0) {
+            this.write('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long n = value; n >= 10; n /= 10) {
+            digits++;
+        }
+        this.ensureCapacity(digits);
+        for (int i = this.length + digits - 1; i >= this.length; i--) {
+            this.buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        this.length += digits;
+        return this;
+    }
+
+    public @NotNull JsonWriter writeNumber(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            this.writeRaw(NULL);
+        } else if (value == (long) value && Math.abs(value) < 1e15) {
+            this.writeNumber((long) value);
+        } else {
+            this.writeAscii(Double.toString(value));
+        }
+        return this;
+    }
+
+    /**
+     * Written by the shortest decimal of the float, widened to a double 0.1f would be 0.10000000149011612
+     */
+    public @NotNull JsonWriter writeNumber(float value) {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            this.writeRaw(NULL);
+        } else if (value == (long) value && Math.abs(value) < 1e15f) {
+            this.writeNumber((long) value);
+        } else {
+            this.writeAscii(Float.toString(value));
+        }
+        return this;
+    }
+
+    public @NotNull JsonWriter writeString(@NotNull CharSequence value) {
+        int length = value.length();
+        this.ensureCapacity(length + 2);
+        this.buffer[this.length++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                this.ensureCapacity(1);
+                this.buffer[this.length++] = (byte) c;
+            } else if (c < 0x80) {
+                this.writeEscaped(c);
+            } else if (c < 0x800) {
+                this.ensureCapacity(2);
+                this.buffer[this.length++] = (byte) (0xC0 | (c >> 6));
+                this.buffer[this.length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                this.ensureCapacity(4);
+                this.buffer[this.length++] = (byte) (0xF0 | (codePoint >> 18));
+                this.buffer[this.length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                this.buffer[this.length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                this.buffer[this.length++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, escaped so the output stays valid UTF-8
+                this.writeEscaped(c);
+            } else {
+                this.ensureCapacity(3);
+                this.buffer[this.length++] = (byte) (0xE0 | (c >> 12));
+                this.buffer[this.length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                this.buffer[this.length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        this.write('"');
+        return this;
+    }
+
+    private void writeEscaped(char c) {
+        switch (c) {
+            case '"':
+                this.write('\\');
+                this.write('"');
+                break;
+            case '\\':
+                this.write('\\');
+                this.write('\\');
+                break;
+            case '\n':
+                this.write('\\');
+                this.write('n');
+                break;
+            case '\r':
+                this.write('\\');
+                this.write('r');
+                break;
+            case '\t':
+                this.write('\\');
+                this.write('t');
+                break;
+            default:
+                this.ensureCapacity(6);
+                this.buffer[this.length++] = '\\';
+                this.buffer[this.length++] = 'u';
+                this.buffer[this.length++] = HEX_DIGITS[(c >> 12) & 0xF];
+                this.buffer[this.length++] = HEX_DIGITS[(c >> 8) & 0xF];
+                this.buffer[this.length++] = HEX_DIGITS[(c >> 4) & 0xF];
+                this.buffer[this.length++] = HEX_DIGITS[c & 0xF];
+        }
+    }
+
+    /**
+     * Write already encoded JSON
+     *
+     * @param json UTF-8 JSON bytes
+     * @return this writer
+     */
+    public @NotNull JsonWriter writeRaw(@NotNull byte[] json) {
+        return this.writeRaw(json, 0, json.length);
+    }
+
+    /**
+     * Write already encoded JSON
+     *
+     * @param json   UTF-8 JSON bytes
+     * @param offset offset in json
+     * @param length number of bytes
+     * @return this writer
+     */
+    public @NotNull JsonWriter writeRaw(@NotNull byte[] json, int offset, int length) {
+        this.ensureCapacity(length);
+        System.arraycopy(json, offset, this.buffer, this.length, length);
+        this.length += length;
+        return this;
+    }
+
+    public @NotNull JsonWriter write(char c) {
+        this.ensureCapacity(1);
+        this.buffer[this.length++] = (byte) c;
+        return this;
+    }
+
+    private void writeAscii(String value) {
+        int length = value.length();
+        this.ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            this.buffer[this.length++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (this.length + extra > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length << 1, this.length + extra));
+        }
+    }
+
+    /**
+     * Discard written bytes and keep the buffer for reuse
+     */
+    public void reset() {
+        this.length = 0;
+    }
+
+    public int size() {
+        return this.length;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(this.buffer, this.length);
+    }
+
+    public void writeTo(@NotNull OutputStream outputStream) throws IOException {
+        outputStream.write(this.buffer, 0, this.length);
+    }
+
+    @Override
+    public String toString() {
+        return new String(this.buffer, 0, this.length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,175 @@
+package telex.support;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Run tasks of the same key one after another in submission order, and tasks of different keys in parallel
+ * <p>
+ * Each active key has a lock-free multi-producer single-consumer queue, drained by one task at a time on the
+ * shared executor. Queues are dropped as soon as they drain, so idle keys cost nothing.
+ */
+public class KeyedSerialExecutor {
+
+    private static final System.Logger logger = System.getLogger(KeyedSerialExecutor.class.getName());
+
+    /**
+     * Tasks run per turn before a busy key yields its thread to other keys
+     */
+    private static final int DRAIN_BATCH = 64;
+
+    private final Executor executor;
+
+    private final int maxQueueDepth;
+
+    private final ConcurrentHashMap<Object, SerialQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * @param executor      executor running the tasks
+     * @param maxQueueDepth tasks which may be pending per key
+     */
+    public KeyedSerialExecutor(@NotNull Executor executor, int maxQueueDepth) {
+        Objects.requireNonNull(executor, "executor must be not null");
+        if (maxQueueDepth < 1) {
+            throw new IllegalArgumentException("maxQueueDepth must be positive");
+        }
+        this.executor = executor;
+        this.maxQueueDepth = maxQueueDepth;
+    }
+
+    /**
+     * @param key  ordering key
+     * @param task task
+     * @throws RejectedExecutionException if the queue of the key is full
+     */
+    public void execute(@NotNull Object key, @NotNull Runnable task) {
+        Objects.requireNonNull(key, "key must be not null");
+        Objects.requireNonNull(task, "task must be not null");
+        while (true) {
+            var queue = this.queues.computeIfAbsent(key, SerialQueue::new);
+            if (queue.offer(task)) {
+                return;
+            }
+            // drained and retired while we were offering, replace it
+            this.queues.remove(key, queue);
+        }
+    }
+
+    /**
+     * @return keys with pending or running tasks
+     */
+    public int getActiveKeys() {
+        return this.queues.size();
+    }
+
+    private final class SerialQueue implements Runnable {
+
+        private final Object key;
+
+        /**
+         * Pending tasks including the running one, -1 once retired
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private final AtomicReference<Node> tail;
+
+        private Node head;
+
+        private SerialQueue(Object key) {
+            this.key = key;
+            this.head = new Node(null);
+            this.tail = new AtomicReference<>(this.head);
+        }
+
+        /**
+         * @return false if the queue is retired
+         */
+        private boolean offer(Runnable task) {
+            int count;
+            do {
+                count = this.pending.get();
+                if (count < 0) {
+                    return false;
+                }
+                if (count >= maxQueueDepth) {
+                    throw new RejectedExecutionException("queue of " + this.key + " is full");
+                }
+            } while (!this.pending.compareAndSet(count, count + 1));
+            var node = new Node(task);
+            this.tail.getAndSet(node).next = node;
+            if (count == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException ex) {
+                    this.pending.set(-1);
+                    queues.remove(this.key, this);
+                    throw ex;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < DRAIN_BATCH; i++) {
+                var task = this.poll();
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    logger.log(System.Logger.Level.ERROR, "task of " + this.key + " failed", ex);
+                }
+                if (this.pending.decrementAndGet() == 0) {
+                    // an offer which saw 0 schedules a new runner itself, so this one stops either way
+                    if (this.pending.compareAndSet(0, -1)) {
+                        queues.remove(this.key, this);
+                    }
+                    return;
+                }
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException ex) {
+                // nobody would drain the rest, retire the queue like offer does, later tasks start a new one
+                int dropped = this.pending.getAndSet(-1);
+                queues.remove(this.key, this);
+                logger.log(System.Logger.Level.ERROR,
+                        "executor rejected the queue of " + this.key + ", " + dropped + " tasks dropped", ex);
+            }
+        }
+
+        /**
+         * A task is counted before it is linked, wait for the producer to finish linking it
+         */
+        private Runnable poll() {
+            Node next;
+            for (int spins = 0; (next = this.head.next) == null; spins++) {
+                if (spins < 64) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            this.head = next;
+            var task = next.task;
+            next.task = null;
+            return task;
+        }
+    }
+
+    private static final class Node {
+
+        private Runnable task;
+
+        private volatile Node next;
+
+        private Node(Runnable task) {
+            this.task = task;
+        }
+    }
+}
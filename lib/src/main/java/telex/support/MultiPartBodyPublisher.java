@@ -3,25 +3,57 @@ package telex.support;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Flow;
 
 public class MultiPartBodyPublisher {
 
     private final static Charset utf8 = StandardCharsets.UTF_8;
 
-    private final HashMap<String, String> stringParts = new HashMap<>();
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private static final BoundaryGenerator defaultBoundaryGenerator = new BoundaryGenerator();
+
+    private static final byte[] DASH_DASH = "--".getBytes(utf8);
+
+    private static final ByteBuffer CRLF = ByteBuffer.wrap("\r\n".getBytes(utf8)).asReadOnlyBuffer();
+
+    private final HashMap<String, byte[]> stringParts = new HashMap<>();
     private final HashMap<String, FilePartSpec> fileParts = new HashMap<>();
 
+    private final byte[] boundary;
+
+    public MultiPartBodyPublisher() {
+        this(defaultBoundaryGenerator);
+    }
+
+    public MultiPartBodyPublisher(@NotNull BoundaryGenerator boundaryGenerator) {
+        Objects.requireNonNull(boundaryGenerator, "boundaryGenerator must be not null");
+        this.boundary = boundaryGenerator.next();
+    }
+
     public void addPart(@NotNull String name, @NotNull String value) {
+        Objects.requireNonNull(name, "name must be not null");
+        Objects.requireNonNull(value, "value must be not null");
+        this.stringParts.put(name, value.getBytes(utf8));
+    }
+
+    /**
+     * @param name  part name
+     * @param value UTF-8 encoded value
+     */
+    public void addPart(@NotNull String name, @NotNull byte[] value) {
         Objects.requireNonNull(name, "name must be not null");
         Objects.requireNonNull(value, "value must be not null");
         this.stringParts.put(name, value);
@@ -33,54 +65,214 @@ public class MultiPartBodyPublisher {
         this.fileParts.put(name, filePart);
     }
 
-    public HttpRequest.BodyPublisher build() {
+    /**
+     * @return Content-Type header value, including the boundary
+     */
+    public @NotNull String getContentType() {
+        return "multipart/form-data; boundary=" + new String(this.boundary, StandardCharsets.US_ASCII);
+    }
+
+    public TypedBodyPublisher build() {
         if (this.stringParts.isEmpty() && this.fileParts.isEmpty()) {
             throw new IllegalStateException("Must have at least one part to build multipart message.");
         }
-        return HttpRequest.BodyPublishers.ofByteArrays(this::getPartByteIterator);
+        var parts = new ArrayList<Part>(this.stringParts.size() + this.fileParts.size());
+        this.stringParts.forEach((name, value) -> {
+            var header = ("\r\nContent-Disposition: form-data; name=" + name + "\r\n" +
+                          "Content-Type: text/plain; charset=UTF-8\r\n\r\n").getBytes(utf8);
+            var part = Arrays.copyOf(header, header.length + value.length + 2);
+            System.arraycopy(value, 0, part, header.length, value.length);
+            part[part.length - 2] = '\r';
+            part[part.length - 1] = '\n';
+            parts.add(new Part(part, null));
+        });
+        this.fileParts.forEach((name, filePart) -> {
+            var contentType = filePart.getContentType();
+            parts.add(new Part(
+                    ("\r\nContent-Disposition: form-data; name=" + name + "; filename=" + filePart.getFilename() + "\r\n" +
+                     "Content-Type: " + (contentType != null ? contentType : DEFAULT_CONTENT_TYPE) + "\r\n\r\n").getBytes(utf8),
+                    filePart));
+        });
+        long contentLength = getContentLength(parts, this.boundary.length);
+        var boundary = this.boundary;
+        var publisher = new ByteBufferPublisher(() -> new PartBufferIterator(parts, boundary));
+        return new MultiPartBody(this.getContentType(), contentLength < 0
+                ? HttpRequest.BodyPublishers.fromPublisher(publisher)
+                : HttpRequest.BodyPublishers.fromPublisher(publisher, contentLength));
     }
 
-    private Iterator<byte[]> getPartByteIterator() {
-        var boundary = UUID.randomUUID().toString();
+    private static class MultiPartBody implements TypedBodyPublisher {
 
-        var stringPartIterator = this.stringParts.entrySet().iterator();
-        var filePartIterator = this.fileParts.entrySet().iterator();
-        var finalBoundaryIterator = List.of(("--" + boundary + "--").getBytes(utf8)).iterator();
-        return new Iterator<>() {
+        private final String contentType;
+
+        private final HttpRequest.BodyPublisher delegate;
+
+        private MultiPartBody(String contentType, HttpRequest.BodyPublisher delegate) {
+            this.contentType = contentType;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public @NotNull String contentType() {
+            return this.contentType;
+        }
+
+        @Override
+        public long contentLength() {
+            return this.delegate.contentLength();
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.delegate.subscribe(subscriber);
+        }
+    }
+
+    /**
+     * @param parts          encoded parts
+     * @param boundaryLength boundary length in bytes
+     * @return exact body length, or -1 if any file part has an unknown length
+     */
+    private static long getContentLength(List<Part> parts, int boundaryLength) {
+        long length = 2 + boundaryLength + 2;
+        for (var part : parts) {
+            length += 2 + boundaryLength + part.header.length;
+            if (part.filePart != null) {
+                long bodyLength = part.bodyLength;
+                if (bodyLength < 0) {
+                    return -1;
+                }
+                length += bodyLength + 2;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Part header encoded once, everything after its delimiter line's boundary
+     */
+    private static class Part {
+
+        private final byte[] header;
+
+        private final @Nullable FilePartSpec filePart;
+
+        /**
+         * Length of the file part taken once, the body sends exactly as many bytes as its Content-Length counts
+         */
+        private final long bodyLength;
+
+        private Part(byte[] header, @Nullable FilePartSpec filePart) {
+            this.header = header;
+            this.filePart = filePart;
+            this.bodyLength = filePart != null ? filePart.getContentLength() : 0;
+        }
+    }
+
+    private static class PartBufferIterator implements Iterator<ByteBuffer>, Closeable {
+
+        private final Iterator<Part> partIterator;
+
+        private final byte[] boundary;
+
+        private Iterator<ByteBuffer> bodyIterator = Collections.emptyIterator();
 
-            private Iterator<byte[]> byteArrayIterator = Collections.emptyIterator();
+        private boolean bodyPending = false;
 
+        private boolean finished = false;
+
+        private PartBufferIterator(List<Part> parts, byte[] boundary) {
+            this.partIterator = parts.iterator();
+            this.boundary = boundary;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !this.finished;
+        }
+
+        @Override
+        public ByteBuffer next() {
+            if (this.finished) {
+                throw new NoSuchElementException("parts are drained");
+            }
+            if (this.bodyIterator.hasNext()) {
+                return this.bodyIterator.next();
+            }
+            if (this.bodyPending) {
+                closeQuietly(this.bodyIterator);
+                // the delimiter after a file body must start on its own line
+                this.bodyPending = false;
+                return CRLF.duplicate();
+            }
+            if (this.partIterator.hasNext()) {
+                var part = this.partIterator.next();
+                if (part.filePart != null) {
+                    this.bodyIterator = openBody(part.filePart, part.bodyLength);
+                    this.bodyPending = true;
+                }
+                return this.delimited(part.header);
+            }
+            this.finished = true;
+            return this.delimited(DASH_DASH);
+        }
+
+        /**
+         * @param tail bytes following the boundary
+         * @return "--" boundary tail
+         */
+        private ByteBuffer delimited(byte[] tail) {
+            var bytes = new byte[2 + this.boundary.length + tail.length];
+            bytes[0] = '-';
+            bytes[1] = '-';
+            System.arraycopy(this.boundary, 0, bytes, 2, this.boundary.length);
+            System.arraycopy(tail, 0, bytes, 2 + this.boundary.length, tail.length);
+            return ByteBuffer.wrap(bytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.bodyIterator instanceof Closeable) {
+                ((Closeable) this.bodyIterator).close();
+            }
+        }
+
+        /**
+         * Close a drained body before the next part is opened, so only the current part is open
+         */
+        private static void closeQuietly(Iterator<ByteBuffer> body) {
+            if (body instanceof Closeable) {
+                try {
+                    ((Closeable) body).close();
+                } catch (IOException | UncheckedIOException ex) {
+                    // drained already, nothing is lost
+                }
+            }
+        }
+    }
+
+    /**
+     * Files are mapped through their channel, other parts fall back to reading the input stream
+     *
+     * @param filePart   file part
+     * @param bodyLength length of the file part when the body was built, or -1 if unknown
+     * @return body buffers
+     */
+    private static Iterator<ByteBuffer> openBody(FilePartSpec filePart, long bodyLength) {
+        var path = filePart.getPath();
+        if (path != null) {
+            return new FileChannelIterator(path, bodyLength);
+        }
+        var byteArrayIterator = new ByteArrayIterator(filePart.getInputStream());
+        return new Iterator<>() {
             @Override
             public boolean hasNext() {
-                return finalBoundaryIterator.hasNext();
+                return byteArrayIterator.hasNext();
             }
 
             @Override
-            public byte[] next() {
-                if (stringPartIterator.hasNext()) {
-                    var next = stringPartIterator.next();
-                    var name = next.getKey();
-                    var value = next.getValue();
-                    String part = "--" + boundary + "\r\n" +
-                                  "Content-Disposition: form-data; name=" + name + "\r\n" +
-                                  "Content-Type: text/plain; charset=UTF-8\r\n\r\n" +
-                                  value + "\r\n";
-                    return part.getBytes(utf8);
-                }
-                if (this.byteArrayIterator.hasNext()) {
-                    return this.byteArrayIterator.next();
-                }
-                if (filePartIterator.hasNext()) {
-                    var next = filePartIterator.next();
-                    var name = next.getKey();
-                    var filePart = next.getValue();
-                    String partHeader = "--" + boundary + "\r\n" +
-                                        "Content-Disposition: form-data; name=" + name + "; filename=" + filePart.getFilename() + "\r\n" +
-                                        "Content-Type: " + filePart.getContentType() + "\r\n\r\n";
-                    this.byteArrayIterator = new ByteArrayIterator(filePart.getInputStream());
-                    return partHeader.getBytes(utf8);
-                }
-                return finalBoundaryIterator.next();
+            public ByteBuffer next() {
+                return ByteBuffer.wrap(byteArrayIterator.next());
             }
         };
     }
@@ -92,7 +284,25 @@ public class MultiPartBodyPublisher {
         InputStream getInputStream();
 
         default String getContentType() {
-            return "application/octet-stream";
+            return DEFAULT_CONTENT_TYPE;
+        }
+
+        /**
+         * Length of the part body, known lengths on every part let the whole body report its content length
+         *
+         * @return length in bytes, or -1 if unknown
+         */
+        default long getContentLength() {
+            return -1;
+        }
+
+        /**
+         * Local file backing this part, if any, it is mapped instead of read through {@link #getInputStream()}
+         *
+         * @return file path or null
+         */
+        default @Nullable Path getPath() {
+            return null;
         }
 
         static FilePartSpec from(@NotNull Path path) {
@@ -112,6 +322,20 @@ public class MultiPartBodyPublisher {
                     return path.getFileName().toString();
                 }
 
+                @Override
+                public long getContentLength() {
+                    try {
+                        return Files.size(path);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }
+
+                @Override
+                public @NotNull Path getPath() {
+                    return path;
+                }
+
                 @Override
                 public @Nullable String getContentType() {
                     try {
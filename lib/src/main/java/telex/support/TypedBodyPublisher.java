@@ -0,0 +1,16 @@
+package telex.support;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.net.http.HttpRequest;
+
+/**
+ * Body publisher which knows the Content-Type of what it publishes
+ */
+public interface TypedBodyPublisher extends HttpRequest.BodyPublisher {
+
+    /**
+     * @return Content-Type header value
+     */
+    @NotNull String contentType();
+}
@@ -0,0 +1,181 @@
+package telex.support;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+
+/**
+ * application/x-www-form-urlencoded body, encoded straight into a single byte array of known length
+ */
+public class UrlEncodedBodyPublisher {
+
+    private static final String CONTENT_TYPE = "application/x-www-form-urlencoded";
+
+    private static final byte[] HEX_DIGITS = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
+    };
+
+    private byte[] buffer;
+
+    private int length = 0;
+
+    public UrlEncodedBodyPublisher() {
+        this(256);
+    }
+
+    /**
+     * @param initialCapacity initial buffer size
+     */
+    public UrlEncodedBodyPublisher(int initialCapacity) {
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    public void addPart(@NotNull String name, @NotNull String value) {
+        Objects.requireNonNull(name, "name must be not null");
+        Objects.requireNonNull(value, "value must be not null");
+        if (this.length > 0) {
+            this.append((byte) '&');
+        }
+        this.appendEncoded(name);
+        this.append((byte) '=');
+        this.appendEncoded(value);
+    }
+
+    /**
+     * @param name  part name
+     * @param value UTF-8 encoded value
+     */
+    public void addPart(@NotNull String name, @NotNull byte[] value) {
+        Objects.requireNonNull(name, "name must be not null");
+        Objects.requireNonNull(value, "value must be not null");
+        if (this.length > 0) {
+            this.append((byte) '&');
+        }
+        this.appendEncoded(name);
+        this.append((byte) '=');
+        for (byte b : value) {
+            if (isUnreserved((char) b)) {
+                this.append(b);
+            } else if (b == ' ') {
+                this.append((byte) '+');
+            } else {
+                this.appendEscaped(b & 0xFF);
+            }
+        }
+    }
+
+    public TypedBodyPublisher build() {
+        return new UrlEncodedBody(HttpRequest.BodyPublishers.ofByteArray(this.buffer, 0, this.length));
+    }
+
+    /**
+     * Build the body from the parts added so far followed by parts encoded before. The encoded parts are
+     * sent as they are, so one array may be shared by many bodies.
+     *
+     * @param encoded parts from {@link #toByteArray()}, must not be modified
+     * @return body
+     */
+    public TypedBodyPublisher build(@NotNull byte[] encoded) {
+        Objects.requireNonNull(encoded, "encoded must be not null");
+        if (encoded.length == 0) {
+            return this.build();
+        }
+        if (this.length > 0) {
+            this.append((byte) '&');
+        }
+        var buffer = this.buffer;
+        int length = this.length;
+        var publisher = new ByteBufferPublisher(
+                () -> List.of(ByteBuffer.wrap(buffer, 0, length), ByteBuffer.wrap(encoded)).iterator());
+        return new UrlEncodedBody(HttpRequest.BodyPublishers.fromPublisher(publisher, length + encoded.length));
+    }
+
+    /**
+     * @return parts added so far, encoded
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(this.buffer, this.length);
+    }
+
+    private void appendEncoded(String value) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (isUnreserved(c)) {
+                this.append((byte) c);
+            } else if (c == ' ') {
+                this.append((byte) '+');
+            } else if (c < 0x80) {
+                this.appendEscaped(c);
+            } else if (c < 0x800) {
+                this.appendEscaped(0xC0 | (c >> 6));
+                this.appendEscaped(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                this.appendEscaped(0xF0 | (codePoint >> 18));
+                this.appendEscaped(0x80 | ((codePoint >> 12) & 0x3F));
+                this.appendEscaped(0x80 | ((codePoint >> 6) & 0x3F));
+                this.appendEscaped(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, encoded as '?' like String.getBytes does
+                this.appendEscaped('?');
+            } else {
+                this.appendEscaped(0xE0 | (c >> 12));
+                this.appendEscaped(0x80 | ((c >> 6) & 0x3F));
+                this.appendEscaped(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+               || c == '-' || c == '_' || c == '.' || c == '*';
+    }
+
+    private void appendEscaped(int b) {
+        this.ensureCapacity(3);
+        this.buffer[this.length++] = '%';
+        this.buffer[this.length++] = HEX_DIGITS[(b >> 4) & 0xF];
+        this.buffer[this.length++] = HEX_DIGITS[b & 0xF];
+    }
+
+    private void append(byte b) {
+        this.ensureCapacity(1);
+        this.buffer[this.length++] = b;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (this.length + extra > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length << 1, this.length + extra));
+        }
+    }
+
+    private static class UrlEncodedBody implements TypedBodyPublisher {
+
+        private final HttpRequest.BodyPublisher delegate;
+
+        private UrlEncodedBody(HttpRequest.BodyPublisher delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public @NotNull String contentType() {
+            return CONTENT_TYPE;
+        }
+
+        @Override
+        public long contentLength() {
+            return this.delegate.contentLength();
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.delegate.subscribe(subscriber);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package telex.updates;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import telex.Telex;
+import telex.TelexResponse;
+import telex.support.JsonValue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receive updates by long polling getUpdates
+ * <p>
+ * The offset is tracked by the poller. The next poll is sent as soon as a batch arrives, while that batch is
+ * still being dispatched, so network round trips never wait for handlers. Batches are dispatched one after
+ * another in update order. Polling pauses when too many received batches are waiting for dispatch.
+ * <p>
+ * Telegram considers updates confirmed once a later poll passes their offset, so updates still waiting for
+ * dispatch when the process dies are not delivered again.
+ *
+ * @see <a href="https://core.telegram.org/bots/api#getupdates">getUpdates</a>
+ */
+public class LongPoller implements AutoCloseable {
+
+    private static final System.Logger logger = System.getLogger(LongPoller.class.getName());
+
+    private static final long MIN_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final Telex telex;
+    private final UpdateHandler handler;
+    private final Executor executor;
+    private final @Nullable ExecutorService ownedExecutor;
+
+    private int timeout = 30;
+    private int limit = 100;
+    private @Nullable List<String> allowedUpdates;
+    private int maxPendingBatches = 2;
+
+    private long offset = 0;
+    private int pendingBatches = 0;
+    private boolean pollDeferred = false;
+    private long backoffMillis = 0;
+    private boolean started = false;
+    private volatile boolean closed = false;
+
+    private CompletableFuture<Void> dispatchTail = CompletableFuture.completedFuture(null);
+
+    /**
+     * Dispatch on a thread owned by the poller
+     *
+     * @param telex   Telex
+     * @param handler update handler
+     */
+    public LongPoller(@NotNull Telex telex, @NotNull UpdateHandler handler) {
+        this(telex, handler, null);
+    }
+
+    /**
+     * @param telex    Telex
+     * @param handler  update handler
+     * @param executor executor running the handler, batches still run one after another
+     */
+    public LongPoller(@NotNull Telex telex, @NotNull UpdateHandler handler, @Nullable Executor executor) {
+        Objects.requireNonNull(telex, "telex must be not null");
+        Objects.requireNonNull(handler, "handler must be not null");
+        this.telex = telex;
+        this.handler = handler;
+        if (executor == null) {
+            this.ownedExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                var thread = new Thread(runnable, "telex-long-poller");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor = this.ownedExecutor;
+        } else {
+            this.ownedExecutor = null;
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * @param timeout long polling timeout in seconds, 30 by default
+     * @return this poller
+     */
+    public synchronized @NotNull LongPoller setTimeout(int timeout) {
+        this.checkNotStarted();
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout must be not negative");
+        }
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * @param limit updates per poll, 1-100, 100 by default
+     * @return this poller
+     */
+    public synchronized @NotNull LongPoller setLimit(int limit) {
+        this.checkNotStarted();
+        if (limit < 1 || limit > 100) {
+            throw new IllegalArgumentException("limit must be between 1 and 100");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * @param allowedUpdates update types to receive, null keeps the previous setting of the bot
+     * @return this poller
+     */
+    public synchronized @NotNull LongPoller setAllowedUpdates(@Nullable List<String> allowedUpdates) {
+        this.checkNotStarted();
+        this.allowedUpdates = allowedUpdates == null ? null : List.copyOf(allowedUpdates);
+        return this;
+    }
+
+    /**
+     * @param maxPendingBatches received batches which may wait for dispatch before polling pauses, 2 by default
+     * @return this poller
+     */
+    public synchronized @NotNull LongPoller setMaxPendingBatches(int maxPendingBatches) {
+        this.checkNotStarted();
+        if (maxPendingBatches < 1) {
+            throw new IllegalArgumentException("maxPendingBatches must be positive");
+        }
+        this.maxPendingBatches = maxPendingBatches;
+        return this;
+    }
+
+    /**
+     * @param offset first update identifier to receive, 0 to start from the oldest unconfirmed update
+     * @return this poller
+     */
+    public synchronized @NotNull LongPoller setOffset(long offset) {
+        this.checkNotStarted();
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * @return next update identifier to receive
+     */
+    public synchronized long getOffset() {
+        return this.offset;
+    }
+
+    public synchronized void start() {
+        if (this.closed) {
+            throw new IllegalStateException("poller is closed");
+        }
+        this.checkNotStarted();
+        this.started = true;
+        this.poll();
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        if (this.ownedExecutor != null) {
+            this.ownedExecutor.shutdown();
+        }
+    }
+
+    private void checkNotStarted() {
+        if (this.started) {
+            throw new IllegalStateException("poller is started");
+        }
+    }
+
+    private synchronized void poll() {
+        if (this.closed) {
+            return;
+        }
+        var payload = new HashMap<String, Object>();
+        payload.put("offset", this.offset);
+        payload.put("limit", this.limit);
+        payload.put("timeout", this.timeout);
+        if (this.allowedUpdates != null) {
+            payload.put("allowed_updates", this.allowedUpdates);
+        }
+        CompletableFuture<TelexResponse> poll;
+        try {
+            poll = this.telex.callAsync("getUpdates", payload, TelexResponse.bodyHandler());
+        } catch (RuntimeException ex) {
+            poll = CompletableFuture.failedFuture(ex);
+        }
+        poll.whenCompleteAsync(this::onResponse);
+    }
+
+    private synchronized void onResponse(@Nullable TelexResponse response, @Nullable Throwable error) {
+        if (this.closed) {
+            return;
+        }
+        if (error != null || response == null || !response.isOk() || response.getResult() == null) {
+            this.backoffMillis = Math.min(MAX_BACKOFF_MILLIS, Math.max(MIN_BACKOFF_MILLIS, this.backoffMillis * 2));
+            if (error != null) {
+                logger.log(System.Logger.Level.WARNING, "getUpdates failed, retrying in " + this.backoffMillis + " ms", error);
+            } else {
+                logger.log(System.Logger.Level.WARNING, "getUpdates failed, retrying in " + this.backoffMillis + " ms: " + response);
+            }
+            CompletableFuture.delayedExecutor(this.backoffMillis, TimeUnit.MILLISECONDS).execute(this::poll);
+            return;
+        }
+        this.backoffMillis = 0;
+        var updates = response.getResult().elements();
+        if (!updates.isEmpty()) {
+            for (var update : updates) {
+                this.offset = Math.max(this.offset, update.getLong("update_id", 0) + 1);
+            }
+            this.pendingBatches++;
+            // the tail always completes normally, a failed batch must not stop the batches after it
+            this.dispatchTail = this.dispatchTail
+                    .thenRunAsync(() -> this.dispatch(updates), this.executor)
+                    .handle((ignored, failure) -> {
+                        if (failure != null) {
+                            logger.log(System.Logger.Level.ERROR, "dispatch failed, rest of the batch is dropped", failure);
+                        }
+                        this.onDispatched();
+                        return null;
+                    });
+        }
+        if (this.pendingBatches < this.maxPendingBatches) {
+            this.poll();
+        } else {
+            this.pollDeferred = true;
+        }
+    }
+
+    private void dispatch(List<JsonValue> updates) {
+        for (var update : updates) {
+            if (this.closed) {
+                return;
+            }
+            try {
+                this.handler.handle(update);
+            } catch (RuntimeException ex) {
+                logger.log(System.Logger.Level.ERROR, "update handler failed: " + update, ex);
+            }
+        }
+    }
+
+    private synchronized void onDispatched() {
+        this.pendingBatches--;
+        if (this.pollDeferred) {
+            this.pollDeferred = false;
+            this.poll();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package telex.updates;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import telex.support.JsonValue;
+import telex.support.KeyedSerialExecutor;
+import telex.support.VirtualThreads;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Dispatch updates of the same chat one after another, and updates of different chats in parallel
+ * <p>
+ * Updates are keyed by the chat of their payload, falling back to its sender. Updates with neither, such as
+ * poll updates, are not ordered.
+ */
+public class OrderedDispatcher implements UpdateHandler, AutoCloseable {
+
+    private static final int DEFAULT_MAX_QUEUE_DEPTH = 1024;
+
+    private final UpdateHandler handler;
+
+    private final KeyedSerialExecutor executor;
+
+    private final @Nullable ExecutorService ownedExecutor;
+
+    /**
+     * Run handlers on virtual threads when the JDK has them, otherwise on the common pool
+     *
+     * @param handler update handler
+     */
+    public OrderedDispatcher(@NotNull UpdateHandler handler) {
+        Objects.requireNonNull(handler, "handler must be not null");
+        this.handler = handler;
+        this.ownedExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        this.executor = new KeyedSerialExecutor(
+                this.ownedExecutor != null ? this.ownedExecutor : ForkJoinPool.commonPool(), DEFAULT_MAX_QUEUE_DEPTH);
+    }
+
+    /**
+     * @param handler       update handler
+     * @param executor      executor running the handler
+     * @param maxQueueDepth updates which may be pending per chat
+     */
+    public OrderedDispatcher(@NotNull UpdateHandler handler, @NotNull Executor executor, int maxQueueDepth) {
+        Objects.requireNonNull(handler, "handler must be not null");
+        this.handler = handler;
+        this.ownedExecutor = null;
+        this.executor = new KeyedSerialExecutor(executor, maxQueueDepth);
+    }
+
+    /**
+     * @param update Telegram update object
+     * @throws RejectedExecutionException if too many updates of the chat are pending
+     */
+    @Override
+    public void handle(@NotNull JsonValue update) {
+        Objects.requireNonNull(update, "update must be not null");
+        Object key = getKey(update);
+        if (key == null) {
+            key = update;
+        }
+        this.executor.execute(key, () -> this.handler.handle(update));
+    }
+
+    /**
+     * @return chats with pending updates
+     */
+    public int getActiveChats() {
+        return this.executor.getActiveKeys();
+    }
+
+    /**
+     * @param update Telegram update object
+     * @return chat id, else sender id, of the update payload, or null
+     */
+    public static @Nullable Long getKey(@NotNull JsonValue update) {
+        Long[] key = {null};
+        update.forEach((name, payload) -> {
+            if (key[0] != null || payload.getType() != JsonValue.Type.OBJECT) {
+                return;
+            }
+            var chat = payload.get("chat");
+            if (chat == null) {
+                chat = payload.get("from");
+            }
+            if (chat != null && chat.getType() == JsonValue.Type.OBJECT) {
+                var id = chat.get("id");
+                if (id != null && id.getType() == JsonValue.Type.NUMBER) {
+                    key[0] = id.asLong();
+                }
+            }
+        });
+        return key[0];
+    }
+
+    @Override
+    public void close() {
+        if (this.ownedExecutor != null) {
+            this.ownedExecutor.shutdown();
+        }
+    }
+}
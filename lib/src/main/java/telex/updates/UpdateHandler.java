@@ -0,0 +1,18 @@
+package telex.updates;
+
+import org.jetbrains.annotations.NotNull;
+import telex.support.JsonValue;
+
+/**
+ * Receives incoming updates
+ *
+ * @see <a href="https://core.telegram.org/bots/api#update">Update</a>
+ */
+@FunctionalInterface
+public interface UpdateHandler {
+
+    /**
+     * @param update Telegram update object
+     */
+    void handle(@NotNull JsonValue update);
+}
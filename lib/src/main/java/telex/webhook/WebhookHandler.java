@@ -0,0 +1,18 @@
+package telex.webhook;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import telex.support.JsonValue;
+
+/**
+ * Receives updates pushed to a webhook and may answer them with a method call
+ */
+@FunctionalInterface
+public interface WebhookHandler {
+
+    /**
+     * @param update Telegram update object
+     * @return call to send back in the webhook response, or null
+     */
+    @Nullable WebhookReply handle(@NotNull JsonValue update);
+}
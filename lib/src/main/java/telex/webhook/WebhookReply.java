@@ -0,0 +1,62 @@
+package telex.webhook;
+
+import org.jetbrains.annotations.NotNull;
+import telex.Telex;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A method call sent back in the webhook response, saving a request to the Bot API
+ * <p>
+ * Telegram does not report the result of such calls, and files cannot be uploaded this way. The reply is
+ * encoded when it is built, so a payload with files is rejected by the handler building it, before the
+ * webhook is answered.
+ *
+ * @see <a href="https://core.telegram.org/bots/api#making-requests-when-getting-updates">Making requests when getting updates</a>
+ */
+public final class WebhookReply {
+
+    private final String method;
+
+    private final Map<String, ?> payload;
+
+    private final byte[] json;
+
+    private WebhookReply(String method, Map<String, ?> payload, byte[] json) {
+        this.method = method;
+        this.payload = payload;
+        this.json = json;
+    }
+
+    /**
+     * @param method  Telegram method
+     * @param payload request payload, without files
+     * @return reply
+     * @throws IllegalArgumentException if the payload has files
+     */
+    public static @NotNull WebhookReply of(@NotNull String method, @NotNull Map<String, ?> payload) {
+        Objects.requireNonNull(method, "method must be not null");
+        Objects.requireNonNull(payload, "payload must be not null");
+        var body = new LinkedHashMap<String, Object>(payload.size() + 1);
+        body.put("method", method);
+        body.putAll(payload);
+        return new WebhookReply(method, payload, Telex.toJson(body));
+    }
+
+    public @NotNull String getMethod() {
+        return this.method;
+    }
+
+    public @NotNull Map<String, ?> getPayload() {
+        return this.payload;
+    }
+
+    /**
+     * @return response body, the payload as a JSON object with the method added, not copied
+     */
+    public byte[] toJson() {
+        return this.json;
+    }
+}
@@ -0,0 +1,214 @@
+package telex.webhook;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import telex.support.JsonException;
+import telex.support.JsonValue;
+import telex.support.VirtualThreads;
+import telex.updates.UpdateHandler;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Receive updates pushed to a webhook, served by the JDK HTTP server
+ * <p>
+ * Requests run on virtual threads when the JDK has them, otherwise on a fixed pool. The handler is called on
+ * the request thread, hand updates to an {@link telex.updates.OrderedDispatcher} to process them elsewhere.
+ * An update the handler rejects is answered with 503, so Telegram delivers it again later. Bodies over 1 MiB
+ * are answered with 413 without being read.
+ * <p>
+ * Small responses may wait for delayed ACKs unless {@link #enableTcpNoDelay()} is called before the server is
+ * created.
+ * <p>
+ * Servers created by {@link #replying} let the handler answer an update with a {@link WebhookReply}, sent as
+ * the JSON body of the webhook response instead of a separate request.
+ *
+ * @see <a href="https://core.telegram.org/bots/api#setwebhook">setWebhook</a>
+ */
+public class WebhookServer implements AutoCloseable {
+
+    private static final System.Logger logger = System.getLogger(WebhookServer.class.getName());
+
+    private static final String SECRET_TOKEN_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    /**
+     * Updates are small JSON objects, larger bodies are answered with 413 before they are read
+     */
+    private static final int MAX_BODY_SIZE = 1 << 20;
+
+    private final HttpServer httpServer;
+
+    private final ExecutorService executor;
+
+    private final String path;
+
+    private final @Nullable byte[] secretToken;
+
+    private final WebhookHandler handler;
+
+    /**
+     * @param address     address to listen on, usually loopback behind a reverse proxy
+     * @param path        webhook path, e.g. "/telegram"
+     * @param secretToken secret_token given to setWebhook, null to accept requests without it
+     * @param handler     update handler
+     * @throws IOException if the address cannot be bound
+     */
+    public WebhookServer(@NotNull InetSocketAddress address, @NotNull String path, @Nullable String secretToken,
+                         @NotNull UpdateHandler handler) throws IOException {
+        this(requireHandler(handler), address, path, secretToken);
+    }
+
+    /**
+     * @param address     address to listen on, usually loopback behind a reverse proxy
+     * @param path        webhook path, e.g. "/telegram"
+     * @param secretToken secret_token given to setWebhook, null to accept requests without it
+     * @param handler     update handler, which may answer with a method call sent in the response
+     * @return server
+     * @throws IOException if the address cannot be bound
+     */
+    public static @NotNull WebhookServer replying(@NotNull InetSocketAddress address, @NotNull String path,
+                                                  @Nullable String secretToken,
+                                                  @NotNull WebhookHandler handler) throws IOException {
+        Objects.requireNonNull(handler, "handler must be not null");
+        return new WebhookServer(handler, address, path, secretToken);
+    }
+
+    /**
+     * Turn off Nagle's algorithm for the JDK HTTP server, which otherwise stalls small responses on delayed ACKs
+     * <p>
+     * This sets the JVM-wide system property sun.net.httpserver.nodelay, so it applies to every
+     * {@link HttpServer} of the process, and only takes effect if called before the first one is created.
+     * A value set by the application is kept.
+     */
+    public static void enableTcpNoDelay() {
+        if (System.getProperty(NO_DELAY_PROPERTY) == null) {
+            System.setProperty(NO_DELAY_PROPERTY, "true");
+        }
+    }
+
+    private static WebhookHandler requireHandler(UpdateHandler handler) {
+        Objects.requireNonNull(handler, "handler must be not null");
+        return update -> {
+            handler.handle(update);
+            return null;
+        };
+    }
+
+    private WebhookServer(WebhookHandler handler, InetSocketAddress address, String path,
+                          @Nullable String secretToken) throws IOException {
+        Objects.requireNonNull(address, "address must be not null");
+        Objects.requireNonNull(path, "path must be not null");
+        this.path = path;
+        this.secretToken = secretToken == null ? null : secretToken.getBytes(StandardCharsets.UTF_8);
+        this.handler = handler;
+        var virtualThreadExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        this.executor = virtualThreadExecutor != null ? virtualThreadExecutor
+                : Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2), runnable -> {
+            var thread = new Thread(runnable, "telex-webhook");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpServer = HttpServer.create(address, 0);
+        this.httpServer.setExecutor(this.executor);
+        this.httpServer.createContext(path, this::exchange);
+    }
+
+    public void start() {
+        this.httpServer.start();
+    }
+
+    /**
+     * @return bound address, with the actual port when listening on port 0
+     */
+    public @NotNull InetSocketAddress getAddress() {
+        return this.httpServer.getAddress();
+    }
+
+    @Override
+    public void close() {
+        this.httpServer.stop(0);
+        this.executor.shutdown();
+    }
+
+    private void exchange(HttpExchange exchange) throws IOException {
+        try {
+            if (!this.path.equals(exchange.getRequestURI().getPath())) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (!this.isAuthorized(exchange.getRequestHeaders().getFirst(SECRET_TOKEN_HEADER))) {
+                exchange.sendResponseHeaders(401, -1);
+                return;
+            }
+            var contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (contentLength != null && isTooLarge(contentLength)) {
+                exchange.sendResponseHeaders(413, -1);
+                return;
+            }
+            var bytes = exchange.getRequestBody().readNBytes(MAX_BODY_SIZE + 1);
+            if (bytes.length > MAX_BODY_SIZE) {
+                exchange.sendResponseHeaders(413, -1);
+                return;
+            }
+            JsonValue update;
+            try {
+                update = JsonValue.parse(bytes);
+            } catch (JsonException ex) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            byte[] body;
+            try {
+                var reply = this.handler.handle(update);
+                body = reply == null ? null : reply.toJson();
+            } catch (RejectedExecutionException ex) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            } catch (RuntimeException ex) {
+                logger.log(System.Logger.Level.ERROR, "update handler failed: " + update, ex);
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            if (body == null) {
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static boolean isTooLarge(String contentLength) {
+        try {
+            return Long.parseLong(contentLength.trim()) > MAX_BODY_SIZE;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    private boolean isAuthorized(@Nullable String secretToken) {
+        if (this.secretToken == null) {
+            return true;
+        }
+        return secretToken != null && MessageDigest.isEqual(this.secretToken, secretToken.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,109 @@
+package telex;
+
+import org.junit.jupiter.api.Test;
+import telex.support.JsonValue;
+import telex.support.StubTelex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CallBatcherTest {
+
+    private final StubTelex telex = new StubTelex((method, payload) -> {
+        switch (method) {
+            case "sendMessage":
+            case "forwardMessage":
+                return StubTelex.ok("{\"message_id\":1,\"chat\":{\"id\":" + payload.get("chat_id") + "},\"date\":0}");
+            case "copyMessage":
+                return StubTelex.ok("{\"message_id\":1}");
+            case "forwardMessages":
+            case "copyMessages": {
+                var messageIds = new ArrayList<String>();
+                for (int i = 0; i < ((List<?>) payload.get("message_ids")).size(); i++) {
+                    messageIds.add("{\"message_id\":" + (100 + i) + "}");
+                }
+                return StubTelex.ok(messageIds.toString());
+            }
+            default:
+                return StubTelex.ok("true");
+        }
+    });
+
+    @Test
+    public void testBatch() {
+        var batcher = new CallBatcher(this.telex);
+        var responses = new ArrayList<CompletableFuture<TelexResponse>>();
+        for (int i = 0; i < 150; i++) {
+            responses.add(batcher.callAsync("deleteMessage", Map.of("chat_id", 42, "message_id", 149 - i)));
+        }
+        responses.add(batcher.callAsync("deleteMessage", Map.of("chat_id", 43, "message_id", 1)));
+        responses.add(batcher.callAsync("sendMessage", Map.of("chat_id", 42, "text", "hi")));
+        for (var response : responses) {
+            assertTrue(response.join().isOk());
+        }
+        var batches = this.telex.getCalls("deleteMessages");
+        assertEquals(2, batches.size());
+        var messageIds = new TreeSet<Long>();
+        for (var batch : batches) {
+            for (var messageId : (List<?>) batch.get("message_ids")) {
+                messageIds.add((Long) messageId);
+            }
+        }
+        assertEquals(150, messageIds.size());
+        assertEquals(0, (long) messageIds.first());
+        assertEquals(149, (long) messageIds.last());
+        assertEquals(1, this.telex.getCalls("deleteMessage").size());
+        assertEquals(43, this.telex.getCalls("deleteMessage").get(0).get("chat_id"));
+        assertEquals(1, this.telex.getCalls("sendMessage").size());
+    }
+
+    @Test
+    public void testResultShape() {
+        var batcher = new CallBatcher(this.telex);
+        var copies = new ArrayList<CompletableFuture<TelexResponse>>();
+        for (int i = 0; i < 3; i++) {
+            copies.add(batcher.callAsync("copyMessage",
+                    Map.of("chat_id", 42, "from_chat_id", 7, "message_id", 10 + i)));
+        }
+        var alone = batcher.callAsync("forwardMessage", Map.of("chat_id", 42, "from_chat_id", 7, "message_id", 20));
+        var captioned = batcher.callAsync("copyMessage",
+                Map.of("chat_id", 42, "from_chat_id", 7, "message_id", 30, "caption", "new"));
+
+        // every gathered caller gets the MessageId at its own position in the batch result
+        for (int i = 0; i < copies.size(); i++) {
+            assertEquals(100 + i, copies.get(i).join().getResult().getLong("message_id", 0));
+        }
+        assertEquals(1, this.telex.getCalls("copyMessages").size());
+        // a call with nothing to be batched with, or with a field copyMessages does not take, goes as it is
+        assertEquals(JsonValue.Type.OBJECT, alone.join().getResult().getType());
+        assertEquals(JsonValue.Type.OBJECT, captioned.join().getResult().getType());
+        assertEquals(1, this.telex.getCalls("forwardMessage").size());
+        assertEquals(1, this.telex.getCalls("copyMessage").size());
+    }
+
+    @Test
+    public void testOrder() {
+        var batcher = new CallBatcher(this.telex);
+        var copies = new ArrayList<CompletableFuture<TelexResponse>>();
+        for (int messageId : new int[]{10, 12, 11, 12}) {
+            copies.add(batcher.callAsync("copyMessage",
+                    Map.of("chat_id", 42, "from_chat_id", 7, "message_id", messageId)));
+        }
+        var results = new ArrayList<Long>();
+        for (var copy : copies) {
+            results.add(copy.join().getResult().getLong("message_id", 0));
+        }
+        // copies keep their order and repeats, the one out of order starts a new batch
+        var batches = this.telex.getCalls("copyMessages");
+        assertEquals(2, batches.size());
+        assertEquals(List.of(10L, 12L), batches.get(0).get("message_ids"));
+        assertEquals(List.of(11L, 12L), batches.get(1).get("message_ids"));
+        assertEquals(List.of(100L, 101L, 100L, 101L), results);
+    }
+}
@@ -0,0 +1,136 @@
+package telex;
+
+import org.junit.jupiter.api.Test;
+import telex.support.StubTelex;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EditCoalescerTest {
+
+    private final List<String> edits = Collections.synchronizedList(new ArrayList<>());
+
+    private final List<Long> times = Collections.synchronizedList(new ArrayList<>());
+
+    private final Semaphore arrived = new Semaphore(0);
+
+    private volatile CountDownLatch hold = new CountDownLatch(0);
+
+    private final StubTelex telex = new StubTelex(this::handle);
+
+    private String handle(String method, Map<String, Object> payload) {
+        var text = String.valueOf(payload.get("text"));
+        this.edits.add(payload.get("message_id") + ":" + text);
+        this.times.add(System.nanoTime());
+        this.arrived.release();
+        try {
+            this.hold.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (text.equals("same")) {
+            return StubTelex.error(400, "Bad Request: message is not modified");
+        }
+        if (text.equals("fail")) {
+            return StubTelex.error(500, "Internal Server Error");
+        }
+        return StubTelex.ok("{\"message_id\":1,\"text\":\"" + text + "\"}");
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        var coalescer = new EditCoalescer(this.telex, Duration.ofMillis(50), Duration.ofMillis(50));
+        this.hold = new CountDownLatch(1);
+        var first = coalescer.editAsync("editMessageText", edit(1, "1"));
+        this.arrived.acquire();
+        // the first edit is in flight, the next ones wait and only the latest is sent
+        var later = new ArrayList<CompletableFuture<TelexResponse>>();
+        for (int i = 2; i <= 4; i++) {
+            later.add(coalescer.editAsync("editMessageText", edit(1, String.valueOf(i))));
+        }
+        this.hold.countDown();
+        assertEquals("1", first.join().getResult().getString("text"));
+        var latest = later.get(2).join();
+        assertEquals("4", latest.getResult().getString("text"));
+        for (var response : later) {
+            assertSame(latest, response.join());
+        }
+        assertEquals(List.of("1:1", "1:4"), this.edits);
+
+        // content equal to the landed one is not sent again
+        assertSame(latest, coalescer.editAsync("editMessageText", edit(1, "4")).join());
+        assertEquals(2, this.edits.size());
+    }
+
+    @Test
+    public void testNotModifiedAndFailure() {
+        var coalescer = new EditCoalescer(this.telex, Duration.ofMillis(20), Duration.ofMillis(20));
+        var notModified = coalescer.editAsync("editMessageText", edit(1, "same")).join();
+        assertEquals(400, notModified.getErrorCode());
+        // not modified means the content is there, so it is not sent again
+        assertSame(notModified, coalescer.editAsync("editMessageText", edit(1, "same")).join());
+        assertEquals(1, this.edits.size());
+
+        assertEquals(500, coalescer.editAsync("editMessageText", edit(1, "fail")).join().getErrorCode());
+        // a failed edit did not land, the same content is sent again
+        assertEquals(500, coalescer.editAsync("editMessageText", edit(1, "fail")).join().getErrorCode());
+        assertEquals(List.of("1:same", "1:fail", "1:fail"), this.edits);
+    }
+
+    @Test
+    public void testRetire() throws Exception {
+        var coalescer = new EditCoalescer(this.telex, Duration.ofMillis(20), Duration.ofMillis(20));
+        coalescer.editAsync("editMessageText", edit(1, "done")).join();
+        assertEquals(1, coalescer.getActiveMessages());
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (coalescer.getActiveMessages() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, coalescer.getActiveMessages());
+        // a forgotten message does not remember its content, an edit offered again is sent
+        assertTrue(coalescer.editAsync("editMessageText", edit(1, "done")).join().isOk());
+        assertEquals(List.of("1:done", "1:done"), this.edits);
+    }
+
+    @Test
+    public void testChatPace() {
+        long interval = Duration.ofMillis(200).toNanos();
+        var coalescer = new EditCoalescer(this.telex, Duration.ofNanos(interval), Duration.ofNanos(interval));
+        // two messages of one chat share its turns
+        var one = coalescer.editAsync("editMessageText", edit(1, "a"));
+        var two = coalescer.editAsync("editMessageText", edit(2, "b"));
+        assertTrue(one.join().isOk());
+        assertTrue(two.join().isOk());
+        assertEquals(2, this.times.size());
+        long gap = Math.abs(this.times.get(1) - this.times.get(0));
+        assertTrue(gap >= interval / 2, String.valueOf(gap));
+    }
+
+    @Test
+    public void testInlinePace() {
+        long interval = Duration.ofMillis(200).toNanos();
+        var coalescer = new EditCoalescer(this.telex, Duration.ofNanos(interval), Duration.ofNanos(interval));
+        // inline messages have no chat_id, the caller names the chat they take turns in
+        var one = coalescer.editAsync("editMessageText", Map.of("inline_message_id", "a", "text", "a"), 42L);
+        var two = coalescer.editAsync("editMessageText", Map.of("inline_message_id", "b", "text", "b"), 42L);
+        assertTrue(one.join().isOk());
+        assertTrue(two.join().isOk());
+        assertEquals(2, this.times.size());
+        long gap = Math.abs(this.times.get(1) - this.times.get(0));
+        assertTrue(gap >= interval / 2, String.valueOf(gap));
+    }
+
+    private static Map<String, ?> edit(int messageId, String text) {
+        return Map.of("chat_id", 42, "message_id", messageId, "text", text);
+    }
+}
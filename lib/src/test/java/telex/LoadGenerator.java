@@ -0,0 +1,277 @@
+package telex;
+
+import telex.limit.RetryPolicy;
+import telex.support.StubBotApiServer;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * End-to-end load against a {@link StubBotApiServer}, reporting throughput, latency percentiles and allocation
+ * <p>
+ * Allocation is the sum of the bytes allocated by every live thread of this JVM, the stub server included,
+ * measured by the HotSpot ThreadMXBean. Threads which start during a scenario count from zero, threads which
+ * end during it are not counted, so it is a lower bound.
+ * <pre>
+ * ./gradlew loadTest -PloadTest='--scenario callAsync --requests 50000 --concurrency 128 --latency 5'
+ * </pre>
+ * Options: --scenario call|callAsync|upload|all, --requests, --concurrency, --latency (ms),
+ * --file-size (bytes, upload), --rate429, --rate5xx (shares of injected failures), --retry, --loopback (answer
+ * in process with a {@link LoopbackTransport}, without the stub server and sockets).
+ */
+public final class LoadGenerator {
+
+    private static final String TOKEN = "123:load";
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        var options = new HashMap<String, String>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("unexpected argument: " + args[i]);
+            }
+            var name = args[i].substring(2);
+            if (name.equals("retry") || name.equals("loopback")) {
+                options.put(name, "true");
+            } else if (i + 1 < args.length) {
+                options.put(name, args[++i]);
+            } else {
+                throw new IllegalArgumentException("missing value of " + args[i]);
+            }
+        }
+        var scenario = options.getOrDefault("scenario", "all");
+        int requests = Integer.parseInt(options.getOrDefault("requests", "20000"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "64"));
+        int fileSize = Integer.parseInt(options.getOrDefault("file-size", "1048576"));
+
+        try (var server = new StubBotApiServer(TOKEN)) {
+            server.setRecording(false)
+                    .setLatencyMillis(Long.parseLong(options.getOrDefault("latency", "0")))
+                    .setRetryAfter(0)
+                    .setFaultRates(Double.parseDouble(options.getOrDefault("rate429", "0")),
+                            Double.parseDouble(options.getOrDefault("rate5xx", "0")))
+                    .start();
+            var builder = Telex.builder(TOKEN).baseUrl(server.getBaseUrl());
+            if (options.containsKey("loopback")) {
+                builder.transport(LoopbackTransport.ok("{\"message_id\":1,\"chat\":{\"id\":1,\"type\":\"private\"},"
+                                                       + "\"date\":0,\"document\":{\"file_id\":\"document-1\"}}"));
+            }
+            if (options.containsKey("retry")) {
+                builder.retryPolicy(new RetryPolicy(5, Duration.ofMillis(10), Duration.ofMillis(200)));
+            }
+            var telex = builder.build();
+
+            // warm up the client, the connection pool and the JIT before measuring
+            run("warmup", requests / 4, concurrency, (i, done) -> sendMessage(telex, i, done), false);
+            if (scenario.equals("call") || scenario.equals("all")) {
+                runBlocking("call", telex, requests, concurrency);
+            }
+            if (scenario.equals("callAsync") || scenario.equals("all")) {
+                run("callAsync", requests, concurrency, (i, done) -> sendMessage(telex, i, done), true);
+            }
+            if (scenario.equals("upload") || scenario.equals("all")) {
+                var file = Files.createTempFile("telex-load", ".bin");
+                try {
+                    var content = new byte[fileSize];
+                    Arrays.fill(content, (byte) 'x');
+                    Files.write(file, content);
+                    int uploads = Math.max(1, (int) Math.min(requests, (1L << 30) / Math.max(1, fileSize)));
+                    run("upload " + fileSize + " B", uploads, concurrency, (i, done) -> sendDocument(telex, i, file, done), true);
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private static void sendMessage(Telex telex, int i, Done done) {
+        long start = System.nanoTime();
+        telex.callAsync("sendMessage", Map.of("chat_id", i, "text", "message " + i), TelexResponse.bodyHandler())
+                .whenComplete((response, error) -> done.complete(start, error == null && response.isOk()));
+    }
+
+    private static void sendDocument(Telex telex, int i, Path file, Done done) {
+        long start = System.nanoTime();
+        telex.callAsync("sendDocument", Map.of("chat_id", i, "document", file), TelexResponse.bodyHandler())
+                .whenComplete((response, error) -> done.complete(start, error == null && response.isOk()));
+    }
+
+    /**
+     * concurrency threads, each calling {@link Telex#call} in a loop
+     */
+    private static void runBlocking(String name, Telex telex, int requests, int concurrency) throws InterruptedException {
+        var next = new AtomicInteger();
+        var stats = new Stats(requests);
+        var threads = new ArrayList<Thread>();
+        var finished = new CountDownLatch(concurrency);
+        var sampled = new CountDownLatch(1);
+        var allocation = new Allocation();
+        long start = System.nanoTime();
+        for (int t = 0; t < concurrency; t++) {
+            var thread = new Thread(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < requests) {
+                    long begin = System.nanoTime();
+                    boolean ok;
+                    try {
+                        ok = telex.call("sendMessage", Map.of("chat_id", i, "text", "message " + i),
+                                TelexResponse.bodyHandler()).isOk();
+                    } catch (RuntimeException ex) {
+                        ok = false;
+                    }
+                    stats.record(begin, ok);
+                }
+                // stay alive until sampled, the allocation of ended threads is lost
+                finished.countDown();
+                try {
+                    sampled.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "load-" + t);
+            threads.add(thread);
+        }
+        allocation.start();
+        for (var thread : threads) {
+            thread.start();
+        }
+        finished.await();
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocation.stop();
+        sampled.countDown();
+        for (var thread : threads) {
+            thread.join();
+        }
+        stats.report(name, elapsed, allocated);
+    }
+
+    /**
+     * keeps concurrency requests in flight until all are sent
+     */
+    private static void run(String name, int requests, int concurrency, Request request, boolean report)
+            throws InterruptedException {
+        var stats = new Stats(requests);
+        var inFlight = new Semaphore(concurrency);
+        var finished = new CountDownLatch(requests);
+        Done done = (begin, ok) -> {
+            stats.record(begin, ok);
+            inFlight.release();
+            finished.countDown();
+        };
+        var allocation = new Allocation();
+        allocation.start();
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            try {
+                request.send(i, done);
+            } catch (RuntimeException ex) {
+                done.complete(System.nanoTime(), false);
+            }
+        }
+        finished.await();
+        if (report) {
+            stats.report(name, System.nanoTime() - start, allocation.stop());
+        }
+    }
+
+    private interface Request {
+        void send(int i, Done done);
+    }
+
+    private interface Done {
+        void complete(long startNanos, boolean ok);
+    }
+
+    private static final class Stats {
+
+        private final long[] latencies;
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        private Stats(int requests) {
+            this.latencies = new long[requests];
+        }
+
+        void record(long startNanos, boolean ok) {
+            int index = this.count.getAndIncrement();
+            if (index < this.latencies.length) {
+                this.latencies[index] = System.nanoTime() - startNanos;
+            }
+            if (!ok) {
+                this.failed.incrementAndGet();
+            }
+        }
+
+        void report(String name, long elapsedNanos, long allocatedBytes) {
+            int count = Math.min(this.count.get(), this.latencies.length);
+            var sorted = Arrays.copyOf(this.latencies, count);
+            Arrays.sort(sorted);
+            double seconds = elapsedNanos / 1e9;
+            System.out.printf(Locale.ROOT, "%-20s %8d req %6d failed %10.0f req/s  p50 %7.2f  p90 %7.2f  p99 %7.2f"
+                                           + "  p99.9 %7.2f  max %7.2f ms  %8.1f MB/s alloc  %9.0f B/req%n",
+                    name, count, this.failed.get(), count / seconds,
+                    percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99),
+                    percentile(sorted, 0.999), percentile(sorted, 1.0),
+                    allocatedBytes / seconds / (1 << 20), count == 0 ? 0.0 : (double) allocatedBytes / count);
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+        }
+    }
+
+    /**
+     * bytes allocated by the threads of this JVM between start and stop
+     */
+    private static final class Allocation {
+
+        private final Map<Long, Long> started = new HashMap<>();
+
+        void start() {
+            this.started.clear();
+            this.started.putAll(sample());
+        }
+
+        long stop() {
+            long total = 0;
+            for (var entry : sample().entrySet()) {
+                total += entry.getValue() - this.started.getOrDefault(entry.getKey(), 0L);
+            }
+            return total;
+        }
+
+        private static Map<Long, Long> sample() {
+            var bean = ManagementFactory.getThreadMXBean();
+            var result = new HashMap<Long, Long>();
+            if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+                return result;
+            }
+            var ids = bean.getAllThreadIds();
+            var allocated = ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(ids);
+            for (int i = 0; i < ids.length; i++) {
+                if (allocated[i] >= 0) {
+                    result.put(ids[i], allocated[i]);
+                }
+            }
+            return result;
+        }
+    }
+}
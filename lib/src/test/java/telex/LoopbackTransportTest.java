@@ -0,0 +1,73 @@
+package telex;
+
+import org.junit.jupiter.api.Test;
+import telex.limit.RateLimiter;
+import telex.limit.RetryPolicy;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoopbackTransportTest {
+
+    @Test
+    public void testCall() {
+        var calls = Collections.synchronizedList(new ArrayList<String>());
+        var attempts = new AtomicInteger();
+        var transport = new LoopbackTransport((method, contentType, body) -> {
+            calls.add(method + " " + contentType + " " + new String(body, StandardCharsets.UTF_8));
+            if (attempts.incrementAndGet() == 1) {
+                return Transport.Response.of(429, ("{\"ok\":false,\"error_code\":429,"
+                        + "\"description\":\"Too Many Requests\",\"parameters\":{\"retry_after\":0}}").getBytes(StandardCharsets.UTF_8));
+            }
+            return Transport.Response.of(200, "{\"ok\":true,\"result\":{\"message_id\":7}}".getBytes(StandardCharsets.UTF_8));
+        });
+        var telex = Telex.builder("123:abc").transport(transport)
+                .retryPolicy(new RetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(2)))
+                .build();
+        var response = telex.call("sendMessage", Map.of("chat_id", 42), TelexResponse.bodyHandler());
+        assertTrue(response.isOk());
+        assertEquals(7, response.getResult().getLong("message_id", 0));
+        assertEquals(List.of("sendMessage application/x-www-form-urlencoded chat_id=42",
+                "sendMessage application/x-www-form-urlencoded chat_id=42"), calls);
+
+        var multipart = new ArrayList<String>();
+        var upload = Telex.builder("123:abc").transport(new LoopbackTransport((method, contentType, body) -> {
+            multipart.add(contentType);
+            multipart.add(new String(body, StandardCharsets.UTF_8));
+            return Transport.Response.of(200, "{\"ok\":true,\"result\":true}".getBytes(StandardCharsets.UTF_8));
+        })).build();
+        assertEquals("{\"ok\":true,\"result\":true}", upload.call("sendDocument", Map.of("document",
+                (Supplier<?>) () -> new ByteArrayInputStream(new byte[]{'x', 'y'}))));
+        assertTrue(multipart.get(0).startsWith("multipart/form-data; boundary="));
+        assertTrue(multipart.get(1).contains("\r\n\r\nxy\r\n"));
+    }
+
+    @Test
+    public void testPenaltyWithoutRetries() {
+        var limiter = new RateLimiter(
+                RateLimiter.Limit.of(30, Duration.ofSeconds(1)),
+                RateLimiter.Limit.of(100, Duration.ofSeconds(1)),
+                RateLimiter.Limit.of(20, Duration.ofMinutes(1)));
+        var telex = Telex.builder("123:abc").rateLimiter(limiter)
+                .transport(new LoopbackTransport((method, contentType, body) -> Transport.Response.of(429,
+                        ("{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests\","
+                         + "\"parameters\":{\"retry_after\":5}}").getBytes(StandardCharsets.UTF_8))))
+                .build();
+        var response = telex.call("sendMessage", Map.of("chat_id", 42), TelexResponse.bodyHandler());
+        assertEquals(429, response.getErrorCode());
+        // no retry policy, the chat waits out retry_after all the same
+        assertFalse(limiter.acquire(42L).isDone());
+        assertTrue(limiter.acquire(43L).isDone());
+    }
+}
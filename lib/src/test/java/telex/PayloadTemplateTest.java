@@ -0,0 +1,73 @@
+package telex;
+
+import org.junit.jupiter.api.Test;
+import telex.support.Bodies;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PayloadTemplateTest {
+
+    @Test
+    public void testBind() {
+        var fixed = new LinkedHashMap<String, Object>();
+        fixed.put("text", "hi & bye");
+        fixed.put("reply_markup", Map.of("inline_keyboard", List.of()));
+        var template = PayloadTemplate.of(fixed);
+        var payload = template.bind("chat_id", 42);
+        assertEquals(3, payload.size());
+        assertEquals(42, payload.get("chat_id"));
+        assertEquals("hi & bye", payload.get("text"));
+
+        var body = Telex.toBodyPublisher(payload);
+        var expected = "chat_id=42&text=hi+%26+bye&reply_markup=%7B%22inline_keyboard%22%3A%5B%5D%7D";
+        assertEquals(expected.length(), body.contentLength());
+        assertEquals(expected, new String(Bodies.drain(body), StandardCharsets.US_ASCII));
+        // the body may be sent again
+        assertEquals(expected, new String(Bodies.drain(body), StandardCharsets.US_ASCII));
+
+        var overridden = Telex.toBodyPublisher(template.bind("text", "other"));
+        assertEquals("text=other&reply_markup=%7B%22inline_keyboard%22%3A%5B%5D%7D",
+                new String(Bodies.drain(overridden), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testUploadOnce() throws Exception {
+        var photo = Files.createTempFile("telex", ".jpg");
+        Files.write(photo, new byte[]{1, 2, 3});
+        var fixed = new LinkedHashMap<String, Object>();
+        fixed.put("photo", photo);
+        fixed.put("caption", "hi");
+        var template = PayloadTemplate.of(fixed);
+        assertTrue(template.isUploadPending());
+        assertNull(template.claimUpload());
+        var waiting = template.claimUpload();
+        assertNotNull(waiting);
+
+        // blocked by the first recipient, the next call uploads again
+        template.completeUpload(TelexResponse.of(403, "{\"ok\":false,\"error_code\":403}".getBytes()));
+        assertTrue(waiting.isDone());
+        assertTrue(template.isUploadPending());
+        assertNull(template.claimUpload());
+
+        var message = "{\"ok\":true,\"result\":{\"message_id\":1,\"photo\":"
+                      + "[{\"file_id\":\"small\"},{\"file_id\":\"large\"}]}}";
+        template.completeUpload(TelexResponse.of(200, message.getBytes()));
+        assertFalse(template.isUploadPending());
+        var uploaded = template.getUploaded();
+        assertNotNull(uploaded);
+        assertEquals("large", uploaded.getFixed().get("photo"));
+        var body = Telex.toBodyPublisher(uploaded.bind("chat_id", 7));
+        assertEquals("application/x-www-form-urlencoded", body.contentType());
+        assertEquals("chat_id=7&photo=large&caption=hi", new String(Bodies.drain(body), StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,55 @@
+package telex;
+
+import org.junit.jupiter.api.Test;
+import telex.support.JsonValue;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TelexResponseTest {
+
+    @Test
+    public void testResult() {
+        var response = TelexResponse.of(200, bytes("{\"ok\":true,\"result\":{\"message_id\":42,"
+                                                   + "\"from\":{\"id\":1,\"is_bot\":true,\"first_name\":\"Bot\"},"
+                                                   + "\"chat\":{\"id\":-1001234567890,\"type\":\"supergroup\"},"
+                                                   + "\"text\":\"hi \\ud83d\\udc4b \\\"there\\\"\","
+                                                   + "\"photo\":[{\"file_id\":\"a\"},{\"file_id\":\"b\"}]}}"));
+        assertTrue(response.isOk());
+        assertEquals(0, response.getErrorCode());
+        var result = response.getResult();
+        assertNotNull(result);
+        assertEquals(42, result.getLong("message_id", 0));
+        assertEquals(-1001234567890L, result.get("chat").getLong("id", 0));
+        assertEquals("hi \uD83D\uDC4B \"there\"", result.getString("text"));
+        assertEquals(2, result.get("photo").size());
+        assertEquals("b", result.get("photo").get(1).getString("file_id"));
+        assertNull(result.get("caption"));
+        assertEquals(JsonValue.Type.BOOLEAN, result.get("from").get("is_bot").getType());
+    }
+
+    @Test
+    public void testError() {
+        var response = TelexResponse.of(429, bytes("{\"ok\":false,\"error_code\":429,"
+                                                   + "\"description\":\"Too Many Requests: retry after 7\","
+                                                   + "\"parameters\":{\"retry_after\":7}}"));
+        assertFalse(response.isOk());
+        assertNull(response.getResult());
+        assertEquals(429, response.getErrorCode());
+        assertEquals(7, response.getRetryAfter());
+        assertEquals("Too Many Requests: retry after 7", response.getDescription());
+    }
+
+    @Test
+    public void testMalformed() {
+        var response = TelexResponse.of(502, bytes("<html>Bad Gateway</html>"));
+        assertFalse(response.isOk());
+        assertEquals(502, response.getErrorCode());
+        assertEquals(0, response.getRetryAfter());
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
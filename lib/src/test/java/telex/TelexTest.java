@@ -1,8 +1,29 @@
 package telex;
 
 import org.junit.jupiter.api.Test;
+import telex.limit.ConcurrencyLimiter;
+import telex.limit.RetryPolicy;
+import telex.support.Bodies;
+import telex.support.FileIdCache;
+import telex.support.StubBotApiServer;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TelexTest {
 
@@ -11,4 +32,174 @@ class TelexTest {
         var telex = new Telex("{token}");
         assertNotNull(telex);
     }
+
+    @Test
+    public void testEndpoint() {
+        var telex = new Telex("123:abc");
+        assertEquals("https://api.telegram.org/bot123:abc/sendMessage", telex.getEndpoint("sendMessage"));
+        assertSame(telex.getEndpointUri("sendMessage"), telex.getEndpointUri("sendMessage"));
+        assertSame(telex.getEndpointUri("setChatTitle"), telex.getEndpointUri("setChatTitle"));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("https://api.telegram.org/bot123:abc/method" + i, telex.getEndpoint("method" + i));
+        }
+    }
+
+    @Test
+    public void testUrlEncodedBody() {
+        var payload = new LinkedHashMap<String, Object>();
+        payload.put("chat_id", 1234);
+        payload.put("text", "hi \uD83D\uDC4B & bye=1");
+        var body = Telex.toBodyPublisher(payload);
+        assertEquals("application/x-www-form-urlencoded", body.contentType());
+        var bytes = Bodies.drain(body);
+        assertEquals(bytes.length, body.contentLength());
+        assertEquals("chat_id=1234&text=hi+%F0%9F%91%8B+%26+bye%3D1", new String(bytes, StandardCharsets.US_ASCII));
+        assertEquals(0, Telex.toBodyPublisher(Map.of()).contentLength());
+        var markup = Telex.toBodyPublisher(Map.of("reply_markup", Map.of("remove_keyboard", true)));
+        assertEquals("reply_markup=%7B%22remove_keyboard%22%3Atrue%7D", new String(Bodies.drain(markup), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testBaseUrl() {
+        var telex = Telex.builder("123:abc").baseUrl("http://127.0.0.1:8081/").build();
+        assertEquals("http://127.0.0.1:8081/bot123:abc/sendMessage", telex.getEndpoint("sendMessage"));
+        assertEquals("http://127.0.0.1:8081/file/bot123:abc/photos/file_1.jpg", telex.getFileUrl("photos/file_1.jpg"));
+    }
+
+    @Test
+    public void testLocalFiles() {
+        var file = Path.of("documents", "report.pdf");
+        var payload = new LinkedHashMap<String, Object>();
+        payload.put("chat_id", 42);
+        payload.put("document", file);
+        payload.put("thumbnail", file.toFile());
+        var local = Telex.toLocalFiles(payload);
+        assertEquals(42, local.get("chat_id"));
+        assertEquals(file.toAbsolutePath().toUri().toString(), local.get("document"));
+        assertEquals(file.toAbsolutePath().toUri().toString(), local.get("thumbnail"));
+        var text = Map.of("chat_id", 42, "text", "hi");
+        assertSame(text, Telex.toLocalFiles(text));
+
+        var telex = Telex.builder("123:abc").baseUrl("http://127.0.0.1:8081").localMode(true).build();
+        var absolute = Path.of("/var/lib/telegram-bot-api/123:abc/documents/file_1.pdf");
+        assertEquals(absolute.toUri().toString(), telex.getFileUrl(absolute.toString()));
+        assertEquals("http://127.0.0.1:8081/file/bot123:abc/documents/file_1.pdf",
+                telex.getFileUrl("documents/file_1.pdf"));
+    }
+
+    @Test
+    public void testStubServer() throws IOException {
+        try (var server = new StubBotApiServer("123:abc").start()) {
+            var telex = Telex.builder("123:abc").baseUrl(server.getBaseUrl())
+                    .retryPolicy(new RetryPolicy(3, Duration.ofMillis(10), Duration.ofMillis(20)))
+                    .build();
+            server.setRetryAfter(0).failWithTooManyRequests(1).failWithServerErrors(1);
+            var response = telex.call("sendMessage", Map.of("chat_id", 42, "text", "hi \uD83D\uDC4B"),
+                    TelexResponse.bodyHandler());
+            assertTrue(response.isOk());
+            assertEquals(42, response.getResult().get("chat").getLong("id", 0));
+            assertEquals(3, server.getCount("sendMessage"));
+            assertEquals("hi \uD83D\uDC4B", server.getRequests("sendMessage").get(0).getField("text"));
+
+            var file = Files.createTempFile("telex", ".txt");
+            try {
+                Files.write(file, "content".getBytes(StandardCharsets.UTF_8));
+                var document = telex.call("sendDocument", Map.of("chat_id", 42, "document", file),
+                        TelexResponse.bodyHandler());
+                assertTrue(document.isOk());
+                assertNotNull(document.getResult().get("document").getString("file_id"));
+                var request = server.getRequests("sendDocument").get(0);
+                assertEquals("42", request.getField("chat_id"));
+                assertArrayEquals("content".getBytes(StandardCharsets.UTF_8), request.getFile("document"));
+                assertEquals(file.getFileName().toString(), request.getFilename("document"));
+            } finally {
+                Files.delete(file);
+            }
+
+            var unauthorized = Telex.builder("123:xyz").baseUrl(server.getBaseUrl()).build()
+                    .call("getMe", Map.of(), TelexResponse.bodyHandler());
+            assertEquals(401, unauthorized.getErrorCode());
+        }
+    }
+
+    @Test
+    public void testLocalMode() throws IOException {
+        try (var server = new StubBotApiServer("123:abc").start()) {
+            var telex = Telex.builder("123:abc").baseUrl(server.getBaseUrl()).localMode(true).build();
+            var file = Files.createTempFile("telex", ".txt");
+            try {
+                var template = PayloadTemplate.of(Map.of("document", file));
+                assertTrue(telex.call("sendDocument", template.bind("chat_id", 42), TelexResponse.bodyHandler()).isOk());
+                assertTrue(telex.call("sendDocument", Map.of("chat_id", 42, "document", file.toFile()),
+                        TelexResponse.bodyHandler()).isOk());
+                for (var request : server.getRequests("sendDocument")) {
+                    assertEquals(file.toAbsolutePath().toUri().toString(), request.getField("document"));
+                    assertNull(request.getFile("document"));
+                }
+            } finally {
+                Files.delete(file);
+            }
+            var local = Path.of("/var/lib/telegram-bot-api/123:abc/documents/file_1.pdf");
+            assertEquals(local.toUri().toString(), telex.getFileUrl(local.toString()));
+            assertEquals(server.getBaseUrl() + "/file/bot123:abc/documents/file_1.pdf",
+                    telex.getFileUrl("documents/file_1.pdf"));
+        }
+    }
+
+    @Test
+    public void testFileIdCache() throws IOException {
+        var dir = Files.createTempDirectory("telex");
+        var file = dir.resolve("banner.png");
+        Files.write(file, new byte[]{1, 2, 3});
+        var hashed = new AtomicInteger();
+        try (var server = new StubBotApiServer("123:abc").start();
+             var cache = FileIdCache.open(dir.resolve("file-ids"), task -> {
+                 hashed.incrementAndGet();
+                 new Thread(task).start();
+             })) {
+            var telex = Telex.builder("123:abc").baseUrl(server.getBaseUrl()).fileIdCache(cache).build();
+            for (int i = 0; i < 2; i++) {
+                assertTrue(telex.call("sendDocument", Map.of("chat_id", 42, "document", file),
+                        TelexResponse.bodyHandler()).isOk());
+            }
+            var requests = server.getRequests("sendDocument");
+            assertArrayEquals(new byte[]{1, 2, 3}, requests.get(0).getFile("document"));
+            // the second call sends the file_id the first one got, and does not hash the file again
+            assertNull(requests.get(1).getFile("document"));
+            assertNotNull(requests.get(1).getField("document"));
+            assertEquals(cache.getFileId(cache.digest(file)), requests.get(1).getField("document"));
+            assertEquals(1, hashed.get());
+        }
+    }
+
+    @Test
+    public void testTransportThrows() {
+        var limiter = new ConcurrencyLimiter(1, 1, 1, 10);
+        var telex = Telex.builder("123:abc").concurrencyLimiter(limiter)
+                .transport((endpoint, method, body) -> {
+                    throw new IllegalStateException("closed");
+                })
+                .build();
+        for (int i = 0; i < 3; i++) {
+            var call = telex.callAsync("sendMessage", Map.of("chat_id", 1), TelexResponse.bodyHandler());
+            assertThrows(CompletionException.class, call::join);
+            assertEquals(0, limiter.getInFlight());
+        }
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    public void testMissingFile() {
+        var missing = Path.of("missing", "document.pdf");
+        var payload = Map.of("chat_id", 1, "document", missing);
+        var transport = LoopbackTransport.ok("true");
+        // a file which can't be read fails the returned future, with or without retries
+        var call = Telex.builder("123:abc").transport(transport).build()
+                .callAsync("sendDocument", payload, TelexResponse.bodyHandler());
+        assertThrows(CompletionException.class, call::join);
+        var retried = Telex.builder("123:abc").transport(transport)
+                .retryPolicy(new RetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(2))).build()
+                .callAsync("sendDocument", payload, TelexResponse.bodyHandler());
+        assertThrows(CompletionException.class, retried::join);
+    }
 }
@@ -0,0 +1,81 @@
+package telex.broadcast;
+
+import org.junit.jupiter.api.Test;
+import telex.LoopbackTransport;
+import telex.Telex;
+import telex.Transport;
+import telex.limit.RetryPolicy;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BroadcastTest {
+
+    private static final Pattern CHAT_ID = Pattern.compile("chat_id=(-?\\d+)");
+
+    @Test
+    public void testRun() throws Exception {
+        var calls = new ConcurrentHashMap<Long, Integer>();
+        var limited = ConcurrentHashMap.<Long>newKeySet();
+        limited.add(105L);
+        limited.add(107L);
+        var telex = Telex.builder("123:abc")
+                .retryPolicy(new RetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(2)))
+                .transport(new LoopbackTransport((method, contentType, body) -> {
+                    var matcher = CHAT_ID.matcher(new String(body, StandardCharsets.UTF_8));
+                    matcher.find();
+                    long chatId = Long.parseLong(matcher.group(1));
+                    int call = calls.merge(chatId, 1, Integer::sum);
+                    if (chatId == 103) {
+                        return response(403, "{\"ok\":false,\"error_code\":403,"
+                                             + "\"description\":\"Forbidden: bot was blocked by the user\"}");
+                    }
+                    // 105 is limited once, 107 until the test lets it go
+                    if (limited.contains(chatId) && (chatId == 107 || call == 1)) {
+                        return response(429, "{\"ok\":false,\"error_code\":429,"
+                                             + "\"description\":\"Too Many Requests\",\"parameters\":{\"retry_after\":0}}");
+                    }
+                    return response(200, "{\"ok\":true,\"result\":{\"message_id\":1}}");
+                }))
+                .build();
+        var recipients = IntStream.range(100, 110).mapToObj(Long::valueOf).collect(Collectors.toList());
+        var checkpoint = Files.createTempDirectory("telex").resolve("broadcast.checkpoint");
+        var blocked = new ArrayList<Object>();
+        var broadcast = new Broadcast(telex, "sendMessage", Map.of("text", "hi"), checkpoint)
+                .setMaxInFlight(4)
+                .setBlockedHandler(blocked::add);
+
+        var first = broadcast.run(recipients.iterator()).join();
+        assertEquals(8, first.getSent());
+        assertEquals(1, first.getBlocked());
+        assertEquals(1, first.getFailed());
+        assertEquals(0, first.getSkipped());
+        assertEquals(List.of(103L), blocked);
+        // the retry policy of the telex retries a 429, the broadcast does not retry on top of it
+        assertEquals(2, (int) calls.get(105L));
+        assertEquals(3, (int) calls.get(107L));
+
+        calls.clear();
+        limited.clear();
+        var second = broadcast.run(recipients.iterator()).join();
+        assertEquals(1, second.getSent());
+        assertEquals(0, second.getBlocked());
+        assertEquals(0, second.getFailed());
+        assertEquals(9, second.getSkipped());
+        assertEquals(Map.of(107L, 1), calls);
+    }
+
+    private static Transport.Response response(int statusCode, String body) {
+        return Transport.Response.of(statusCode, body.getBytes(StandardCharsets.UTF_8));
+    }
+}
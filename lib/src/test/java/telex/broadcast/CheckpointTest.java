@@ -0,0 +1,44 @@
+package telex.broadcast;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CheckpointTest {
+
+    @Test
+    public void testResume() throws Exception {
+        var dir = Files.createTempDirectory("telex");
+        var path = dir.resolve("broadcast.checkpoint");
+        try (var checkpoint = Checkpoint.open(path)) {
+            for (int i = 0; i < 1000; i++) {
+                if (i != 500) {
+                    checkpoint.settle(i);
+                }
+            }
+            checkpoint.settle(2000);
+        }
+        assertEquals(4 * (1 + 1000), Files.size(path));
+        try (var checkpoint = Checkpoint.open(path)) {
+            assertTrue(checkpoint.isSettled(0));
+            assertTrue(checkpoint.isSettled(999));
+            assertFalse(checkpoint.isSettled(500));
+            assertFalse(checkpoint.isSettled(1000));
+            assertTrue(checkpoint.isSettled(2000));
+        }
+        // compacted to the watermark 500 followed by 501..999 and 2000
+        assertEquals(4 * (1 + 499 + 1), Files.size(path));
+
+        // a record cut short by a crash is ignored
+        Files.write(path, new byte[]{0, 0}, StandardOpenOption.APPEND);
+        try (var checkpoint = Checkpoint.open(path)) {
+            assertTrue(checkpoint.isSettled(2000));
+            assertFalse(checkpoint.isSettled(500));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package telex.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrencyLimiterTest {
+
+    @Test
+    public void testQueue() {
+        var limiter = new ConcurrencyLimiter(2, 1, 10, 2);
+        var first = limiter.acquire(Lane.NORMAL).join();
+        limiter.acquire(Lane.NORMAL).join();
+        var normal = limiter.acquire(Lane.NORMAL);
+        var urgent = limiter.acquire(Lane.INTERACTIVE);
+        assertFalse(normal.isDone());
+        assertTrue(limiter.acquire(Lane.NORMAL).isCompletedExceptionally());
+        assertEquals(2, limiter.getQueued());
+
+        first.onSuccess();
+        assertTrue(urgent.isDone());
+        assertFalse(normal.isDone());
+        first.onSuccess();
+        assertEquals(2, limiter.getInFlight());
+        urgent.join().onSuccess();
+        assertTrue(normal.isDone());
+    }
+
+    @Test
+    public void testLanes() {
+        var limiter = new ConcurrencyLimiter(1, 1, 1, 100);
+        var held = limiter.acquire(Lane.NORMAL).join();
+        var order = new ArrayList<Lane>();
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire(Lane.INTERACTIVE).thenAccept(permit -> {
+                order.add(Lane.INTERACTIVE);
+                permit.onIgnore();
+            });
+        }
+        for (int i = 0; i < 2; i++) {
+            limiter.acquire(Lane.BULK).thenAccept(permit -> {
+                order.add(Lane.BULK);
+                permit.onIgnore();
+            });
+        }
+        held.onIgnore();
+        assertEquals(22, order.size());
+        // interactive calls go first, but bulk ones are not starved until all of them are done
+        assertEquals(Lane.INTERACTIVE, order.get(0));
+        assertTrue(order.subList(0, 20).contains(Lane.BULK), order.toString());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testAimd() {
+        var limiter = new ConcurrencyLimiter(10, 1, 20, 100);
+        for (int i = 0; i < 100; i++) {
+            var permits = new CompletableFuture<?>[limiter.getLimit()];
+            for (int j = 0; j < permits.length; j++) {
+                permits[j] = limiter.acquire(Lane.NORMAL);
+            }
+            for (var permit : permits) {
+                ((ConcurrencyLimiter.Permit) permit.join()).onSuccess();
+            }
+        }
+        int raised = limiter.getLimit();
+        assertTrue(raised > 10, String.valueOf(raised));
+        limiter.acquire(Lane.NORMAL).join().onDropped();
+        assertTrue(limiter.getLimit() < raised);
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire(Lane.NORMAL).join().onDropped();
+        }
+        assertEquals(1, limiter.getLimit());
+        assertTrue(limiter.acquire(Lane.NORMAL).thenAccept(ConcurrencyLimiter.Permit::onSuccess).isDone());
+    }
+}
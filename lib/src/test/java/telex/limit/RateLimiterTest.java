@@ -0,0 +1,98 @@
+package telex.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTest {
+
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+    @Test
+    public void testChatLimit() {
+        var limiter = RateLimiter.telegramDefaults();
+        long now = System.nanoTime();
+        assertEquals(0, limiter.reserveChat(42L, now));
+        assertEquals(SECOND, limiter.reserveChat(42, now));
+        assertEquals(2 * SECOND, limiter.reserveChat("42", now));
+        assertEquals(0, limiter.reserveChat(43L, now));
+        for (int i = 0; i < 20; i++) {
+            assertEquals(0, limiter.reserveChat(-100L, now));
+        }
+        assertEquals(3 * SECOND, limiter.reserveChat("-100", now));
+        assertEquals(0, limiter.reserveChat("@channel", now));
+    }
+
+    @Test
+    public void testGlobalLimit() {
+        var limiter = RateLimiter.telegramDefaults();
+        for (int i = 0; i < 30; i++) {
+            assertTrue(limiter.acquire(null).isDone());
+        }
+        // the burst is used up, the next requests wait for their slots in turn
+        var next = limiter.acquire(null);
+        var after = limiter.acquire(null);
+        assertFalse(next.isDone());
+        after.join();
+        assertTrue(next.isDone());
+    }
+
+    @Test
+    public void testIdleChatsAreDropped() {
+        var limiter = RateLimiter.telegramDefaults();
+        long now = System.nanoTime();
+        for (long chat = 1; chat <= 100; chat++) {
+            limiter.reserveChat(chat, now);
+        }
+        assertEquals(100, limiter.getTrackedChats());
+        limiter.reserveChat(1000L, now + 5 * SECOND);
+        assertEquals(1, limiter.getTrackedChats());
+        assertEquals(0, limiter.reserveChat(1L, now + 5 * SECOND));
+    }
+
+    @Test
+    public void testPenalty() {
+        var limiter = RateLimiter.telegramDefaults();
+        long now = System.nanoTime();
+        limiter.penalize(42L, Duration.ofSeconds(5), now);
+        assertEquals(5 * SECOND, limiter.reserveChat(42L, now));
+        // other chats go on at the steady rate, without the burst
+        assertTrue(limiter.acquire(43L).isDone());
+        assertFalse(limiter.acquire(44L).isDone());
+
+        var limited = RateLimiter.telegramDefaults();
+        limited.penalize(null, Duration.ofSeconds(5));
+        var request = limited.acquire(43L);
+        assertFalse(request.isDone());
+        assertFalse(limited.acquire(44L, Lane.INTERACTIVE).isDone());
+    }
+
+    @Test
+    public void testLanes() {
+        var limiter = new RateLimiter(
+                RateLimiter.Limit.of(40, Duration.ofSeconds(1), 1),
+                RateLimiter.Limit.of(1, Duration.ofSeconds(1)),
+                RateLimiter.Limit.of(20, Duration.ofMinutes(1)));
+        var order = new ConcurrentLinkedQueue<Lane>();
+        var all = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < 10; i++) {
+            all.add(limiter.acquire(null, Lane.BULK).thenRun(() -> order.add(Lane.BULK)));
+        }
+        for (int i = 0; i < 3; i++) {
+            all.add(limiter.acquire(null, Lane.INTERACTIVE).thenRun(() -> order.add(Lane.INTERACTIVE)));
+        }
+        CompletableFuture.allOf(all.toArray(new CompletableFuture[0])).join();
+        var lanes = new ArrayList<>(order);
+        assertEquals(13, lanes.size());
+        // the first bulk request took the free slot, interactive ones go next
+        assertEquals(List.of(Lane.BULK, Lane.INTERACTIVE, Lane.INTERACTIVE, Lane.INTERACTIVE), lanes.subList(0, 4));
+    }
+}
@@ -0,0 +1,24 @@
+package telex.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryPolicyTest {
+
+    @Test
+    public void testDelay() {
+        var policy = new RetryPolicy(3, Duration.ofMillis(100), Duration.ofSeconds(1));
+        assertEquals(7000, policy.getDelayMillis(1, 429, 7));
+        assertEquals(-1, policy.getDelayMillis(1, 400, 0));
+        assertEquals(-1, policy.getDelayMillis(1, 403, 0));
+        long first = policy.getDelayMillis(1, 502, 0);
+        assertTrue(first >= 50 && first <= 100, String.valueOf(first));
+        long second = policy.getDelayMillis(2, 500, 0);
+        assertTrue(second >= 100 && second <= 200, String.valueOf(second));
+        assertEquals(-1, policy.getDelayMillis(3, 429, 7));
+    }
+}
@@ -0,0 +1,45 @@
+package telex.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FileIdCacheTest {
+
+    @Test
+    public void testPersist() throws Exception {
+        var dir = Files.createTempDirectory("telex");
+        var index = dir.resolve("file-ids");
+        var banner = dir.resolve("banner.png");
+        var copy = dir.resolve("copy.png");
+        Files.write(banner, new byte[]{1, 2, 3});
+        Files.write(copy, new byte[]{1, 2, 3});
+
+        String digest;
+        try (var cache = FileIdCache.open(index)) {
+            digest = cache.digest(banner);
+            assertEquals("039058c6f2c0cb492c533b0a4d14ef77cc0f78abccced5287d84a1a2011cfb81", digest);
+            assertEquals(digest, cache.digest(copy));
+            assertNull(cache.getFileId(digest));
+            cache.putFileId(digest, "AgAD-banner");
+            // grow past the first mapping
+            for (int i = 0; i < 5000; i++) {
+                cache.putFileId(String.format("%064x", i), "file-" + i);
+            }
+        }
+        try (var cache = FileIdCache.open(index)) {
+            assertEquals(5001, cache.size());
+            assertEquals("AgAD-banner", cache.getFileId(cache.digest(banner)));
+            assertEquals("file-4999", cache.getFileId(String.format("%064x", 4999)));
+
+            Files.write(banner, new byte[]{4, 5, 6});
+            Files.setLastModifiedTime(banner, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+            assertNotEquals(digest, cache.digest(banner));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package telex.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonWriterTest {
+
+    @Test
+    public void testStructures() {
+        var button = new LinkedHashMap<String, Object>();
+        button.put("text", "Yes \u2705");
+        button.put("callback_data", "vote:1");
+        var markup = Map.of("inline_keyboard", List.of(List.of(button)));
+        assertEquals("{\"inline_keyboard\":[[{\"text\":\"Yes \u2705\",\"callback_data\":\"vote:1\"}]]}",
+                new JsonWriter().writeValue(markup).toString());
+        assertEquals("[1,-2,3]", new JsonWriter().writeValue(new long[]{1, -2, 3}).toString());
+        assertEquals("[\"a\",null,true]", new JsonWriter().writeValue(new Object[]{"a", null, true}).toString());
+    }
+
+    @Test
+    public void testScalars() {
+        var json = new JsonWriter(16);
+        assertEquals("-9223372036854775808", json.writeValue(Long.MIN_VALUE).toString());
+        json.reset();
+        assertEquals("1.5", json.writeValue(1.5).toString());
+        json.reset();
+        assertEquals("null", json.writeValue(Double.NaN).toString());
+        json.reset();
+        assertEquals("0.1", json.writeValue(0.1f).toString());
+        json.reset();
+        assertEquals("[0.1,2]", json.writeValue(new float[]{0.1f, 2f}).toString());
+        json.reset();
+        assertEquals("\"q\\\"\\\\\\n\\u0001\uD83D\uDC4B\"", json.writeValue("q\"\\\n\u0001\uD83D\uDC4B").toString());
+    }
+}
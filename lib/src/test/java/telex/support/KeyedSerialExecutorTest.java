@@ -0,0 +1,165 @@
+package telex.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyedSerialExecutorTest {
+
+    @Test
+    public void testPerKeyOrder() throws InterruptedException {
+        var pool = Executors.newFixedThreadPool(8);
+        try {
+            var executor = new KeyedSerialExecutor(pool, Integer.MAX_VALUE);
+            int keys = 64;
+            int tasksPerProducer = 2000;
+            int producers = 4;
+            var seen = new ConcurrentHashMap<Integer, List<Integer>>();
+            var concurrent = new AtomicInteger();
+            var violations = new AtomicInteger();
+            var done = new CountDownLatch(producers * tasksPerProducer);
+            var threads = new ArrayList<Thread>();
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                var thread = new Thread(() -> {
+                    for (int i = 0; i < tasksPerProducer; i++) {
+                        int key = (i * 31 + producer) % keys;
+                        int sequence = i;
+                        executor.execute(key * producers + producer, () -> {
+                            if (concurrent.incrementAndGet() > 8) {
+                                violations.incrementAndGet();
+                            }
+                            seen.computeIfAbsent(key * producers + producer, k -> new ArrayList<>()).add(sequence);
+                            concurrent.decrementAndGet();
+                            done.countDown();
+                        });
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(0, violations.get());
+            for (var sequences : seen.values()) {
+                for (int i = 1; i < sequences.size(); i++) {
+                    assertTrue(sequences.get(i - 1) < sequences.get(i), "out of order: " + sequences);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testOfferWhileDraining() throws InterruptedException {
+        var pool = Executors.newFixedThreadPool(8);
+        try {
+            var executor = new KeyedSerialExecutor(pool, Integer.MAX_VALUE);
+            int producers = 4;
+            int tasksPerProducer = 20000;
+            var runs = new AtomicIntegerArray(producers * tasksPerProducer);
+            var running = new AtomicBoolean();
+            var overlaps = new AtomicInteger();
+            var done = new CountDownLatch(producers * tasksPerProducer);
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                new Thread(() -> {
+                    for (int i = 0; i < tasksPerProducer; i++) {
+                        int task = producer * tasksPerProducer + i;
+                        // one key drained to empty over and over, offers race the runner retiring it
+                        executor.execute("chat", () -> {
+                            if (!running.compareAndSet(false, true)) {
+                                overlaps.incrementAndGet();
+                            }
+                            runs.incrementAndGet(task);
+                            running.set(false);
+                            done.countDown();
+                        });
+                        if (i % 16 == 0) {
+                            Thread.yield();
+                        }
+                    }
+                }).start();
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+            assertEquals(0, overlaps.get());
+            for (int i = 0; i < runs.length(); i++) {
+                assertEquals(1, runs.get(i), "task " + i);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testQueueDepth() {
+        var blocked = new CountDownLatch(1);
+        var pool = Executors.newSingleThreadExecutor();
+        try {
+            var executor = new KeyedSerialExecutor(pool, 2);
+            executor.execute(1L, () -> {
+                try {
+                    blocked.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            executor.execute(1L, () -> {
+            });
+            assertThrows(RejectedExecutionException.class, () -> executor.execute(1L, () -> {
+            }));
+            executor.execute(2L, () -> {
+            });
+        } finally {
+            blocked.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testRejectedTurn() throws InterruptedException {
+        var executions = new AtomicInteger();
+        var runners = new ArrayList<Thread>();
+        // the second turn of the busy key is rejected
+        var executor = new KeyedSerialExecutor(runnable -> {
+            if (executions.incrementAndGet() == 2) {
+                throw new RejectedExecutionException("rejected");
+            }
+            var thread = new Thread(runnable);
+            runners.add(thread);
+            thread.start();
+        }, Integer.MAX_VALUE);
+        var release = new CountDownLatch(1);
+        var ran = new AtomicInteger();
+        executor.execute(1L, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            ran.incrementAndGet();
+        });
+        for (int i = 1; i < 70; i++) {
+            executor.execute(1L, ran::incrementAndGet);
+        }
+        release.countDown();
+        runners.get(0).join();
+        assertEquals(64, ran.get());
+        assertEquals(0, executor.getActiveKeys());
+
+        var done = new CountDownLatch(1);
+        executor.execute(1L, done::countDown);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,109 @@
+package telex.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MultiPartBodyPublisherTest {
+
+    @Test
+    public void testFilePart() throws IOException {
+        var file = Files.createTempFile("telex", ".bin");
+        try {
+            var content = new byte[3 << 20];
+            for (int i = 0; i < content.length; i++) {
+                content[i] = (byte) i;
+            }
+            Files.write(file, content);
+            var publisher = new MultiPartBodyPublisher();
+            publisher.addPart("chat_id", "1234");
+            publisher.addPart("caption", "hi\uD83D\uDC4B");
+            publisher.addPart("document", MultiPartBodyPublisher.FilePartSpec.from(file));
+            var bodyPublisher = publisher.build();
+            var bytes = Bodies.drain(bodyPublisher);
+            assertEquals(bytes.length, bodyPublisher.contentLength());
+            var body = new String(bytes, StandardCharsets.ISO_8859_1);
+            var boundary = bodyPublisher.contentType().substring("multipart/form-data; boundary=".length());
+            assertEquals(BoundaryGenerator.BOUNDARY_LENGTH, boundary.length());
+            assertTrue(body.startsWith("--" + boundary + "\r\n"));
+            assertTrue(body.endsWith("\r\n--" + boundary + "--"));
+            assertTrue(body.contains("name=chat_id\r\nContent-Type: text/plain; charset=UTF-8\r\n\r\n1234\r\n"));
+            assertTrue(body.contains(new String(content, StandardCharsets.ISO_8859_1) + "\r\n--"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testStreamPart() {
+        var publisher = new MultiPartBodyPublisher();
+        publisher.addPart("photo", new MultiPartBodyPublisher.FilePartSpec() {
+            @Override
+            public String getFilename() {
+                return "photo.jpg";
+            }
+
+            @Override
+            public InputStream getInputStream() {
+                return new ByteArrayInputStream("jpeg".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        var bodyPublisher = publisher.build();
+        assertEquals(-1, bodyPublisher.contentLength());
+        var body = new String(Bodies.drain(bodyPublisher), StandardCharsets.UTF_8);
+        assertTrue(body.contains("name=photo; filename=photo.jpg\r\nContent-Type: application/octet-stream\r\n\r\njpeg\r\n--"));
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        var empty = Files.createTempFile("telex", ".bin");
+        try {
+            var iterator = new FileChannelIterator(empty);
+            assertTrue(iterator.isOpen());
+            assertFalse(iterator.hasNext());
+            assertFalse(iterator.isOpen());
+
+            var publisher = new MultiPartBodyPublisher();
+            publisher.addPart("thumbnail", MultiPartBodyPublisher.FilePartSpec.from(empty));
+            publisher.addPart("document", MultiPartBodyPublisher.FilePartSpec.from(empty));
+            var bodyPublisher = publisher.build();
+            var bytes = Bodies.drain(bodyPublisher);
+            assertEquals(bytes.length, bodyPublisher.contentLength());
+        } finally {
+            Files.delete(empty);
+        }
+    }
+
+    @Test
+    public void testFileChangedAfterBuild() throws IOException {
+        var file = Files.createTempFile("telex", ".txt");
+        try {
+            Files.writeString(file, "abcdef");
+            var publisher = new MultiPartBodyPublisher();
+            publisher.addPart("document", MultiPartBodyPublisher.FilePartSpec.from(file));
+            var bodyPublisher = publisher.build();
+
+            // the body sends the length it was built with
+            Files.writeString(file, "abcdefgh");
+            var bytes = Bodies.drain(bodyPublisher);
+            assertEquals(bytes.length, bodyPublisher.contentLength());
+            assertTrue(new String(bytes, StandardCharsets.UTF_8).contains("\r\n\r\nabcdef\r\n--"));
+
+            Files.writeString(file, "abc");
+            var error = assertThrows(CompletionException.class, () -> Bodies.drain(bodyPublisher));
+            assertTrue(error.getCause().getCause() instanceof IOException);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
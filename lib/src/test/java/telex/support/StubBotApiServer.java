@@ -0,0 +1,478 @@
+package telex.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Local Bot API server for tests and load tests
+ * <p>
+ * Serves /bot&lt;token&gt;/&lt;method&gt; and /file/bot&lt;token&gt;/&lt;path&gt; like api.telegram.org.
+ * Urlencoded and multipart bodies are parsed into {@link Request}s. Every method returns a plausible result,
+ * which may be replaced per method. Latency, 429 and 5xx responses can be injected.
+ */
+public class StubBotApiServer implements AutoCloseable {
+
+    static {
+        // the server writes headers and body separately, Nagle's algorithm would hold back every body
+        // until the client's delayed ACK, about 40 ms
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final String token;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final Map<String, Function<Request, String>> results = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final List<Request> requests = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+    private final AtomicLong messageIds = new AtomicLong();
+    private final AtomicInteger tooManyRequests = new AtomicInteger();
+    private final AtomicInteger serverErrors = new AtomicInteger();
+
+    private volatile long latencyMillis = 0;
+    private volatile int retryAfter = 1;
+    private volatile double tooManyRequestsRate = 0;
+    private volatile double serverErrorRate = 0;
+    private volatile boolean recording = true;
+
+    /**
+     * @param token bot token accepted by the server
+     * @throws UncheckedIOException if the server can not be bound
+     */
+    public StubBotApiServer(@NotNull String token) {
+        Objects.requireNonNull(token, "token must be not null");
+        this.token = token;
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            var thread = new Thread(runnable, "stub-bot-api");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", this::handle);
+    }
+
+    public @NotNull StubBotApiServer start() {
+        this.server.start();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * @return base URL for {@code Telex.Builder.baseUrl}
+     */
+    public @NotNull String getBaseUrl() {
+        return "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    /**
+     * @param latencyMillis delay before every response
+     * @return this server
+     */
+    public @NotNull StubBotApiServer setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    /**
+     * @param retryAfter retry_after of injected 429 responses, seconds
+     * @return this server
+     */
+    public @NotNull StubBotApiServer setRetryAfter(int retryAfter) {
+        this.retryAfter = retryAfter;
+        return this;
+    }
+
+    /**
+     * @param tooManyRequestsRate share of method calls answered with 429
+     * @param serverErrorRate     share of method calls answered with 502
+     * @return this server
+     */
+    public @NotNull StubBotApiServer setFaultRates(double tooManyRequestsRate, double serverErrorRate) {
+        this.tooManyRequestsRate = tooManyRequestsRate;
+        this.serverErrorRate = serverErrorRate;
+        return this;
+    }
+
+    /**
+     * @param count next method calls answered with 429
+     * @return this server
+     */
+    public @NotNull StubBotApiServer failWithTooManyRequests(int count) {
+        this.tooManyRequests.addAndGet(count);
+        return this;
+    }
+
+    /**
+     * @param count next method calls answered with 502, after injected 429s
+     * @return this server
+     */
+    public @NotNull StubBotApiServer failWithServerErrors(int count) {
+        this.serverErrors.addAndGet(count);
+        return this;
+    }
+
+    /**
+     * @param recording whether requests are kept for {@link #getRequests()}, they are counted anyway
+     * @return this server
+     */
+    public @NotNull StubBotApiServer setRecording(boolean recording) {
+        this.recording = recording;
+        return this;
+    }
+
+    /**
+     * @param method Telegram method
+     * @param result result JSON of a request, called on a server thread and may block
+     * @return this server
+     */
+    public @NotNull StubBotApiServer onMethod(@NotNull String method, @NotNull Function<Request, String> result) {
+        Objects.requireNonNull(method, "method must be not null");
+        Objects.requireNonNull(result, "result must be not null");
+        this.results.put(method, result);
+        return this;
+    }
+
+    /**
+     * @param filePath file_path served under /file/bot&lt;token&gt;/
+     * @param content  file content
+     * @return this server
+     */
+    public @NotNull StubBotApiServer putFile(@NotNull String filePath, @NotNull byte[] content) {
+        this.files.put(filePath, content);
+        return this;
+    }
+
+    /**
+     * @return recorded method calls, in arrival order
+     */
+    public @NotNull List<Request> getRequests() {
+        synchronized (this.requests) {
+            return List.copyOf(this.requests);
+        }
+    }
+
+    /**
+     * @param method Telegram method
+     * @return recorded calls of the method, in arrival order
+     */
+    public @NotNull List<Request> getRequests(@NotNull String method) {
+        var result = new ArrayList<Request>();
+        for (var request : this.getRequests()) {
+            if (request.getMethod().equals(method)) {
+                result.add(request);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param method Telegram method
+     * @return calls of the method received so far, failed ones included
+     */
+    public int getCount(@NotNull String method) {
+        var count = this.counts.get(method);
+        return count == null ? 0 : count.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            var path = exchange.getRequestURI().getRawPath();
+            var apiPrefix = "/bot" + this.token + "/";
+            var filePrefix = "/file/bot" + this.token + "/";
+            if (path.startsWith(apiPrefix)) {
+                this.handleMethod(exchange, path.substring(apiPrefix.length()));
+            } else if (path.startsWith(filePrefix)) {
+                this.handleFile(exchange, path.substring(filePrefix.length()));
+            } else if (path.startsWith("/bot") || path.startsWith("/file/bot")) {
+                respond(exchange, 401, error(401, "Unauthorized", null));
+            } else {
+                respond(exchange, 404, error(404, "Not Found", null));
+            }
+        } catch (RuntimeException ex) {
+            respond(exchange, 500, error(500, "Internal Server Error: " + ex, null));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleMethod(HttpExchange exchange, String method) throws IOException {
+        var body = exchange.getRequestBody().readAllBytes();
+        this.counts.computeIfAbsent(method, key -> new AtomicInteger()).incrementAndGet();
+        this.sleep();
+        var random = ThreadLocalRandom.current();
+        if (takeOne(this.tooManyRequests) || random.nextDouble() < this.tooManyRequestsRate) {
+            respond(exchange, 429, error(429, "Too Many Requests: retry after " + this.retryAfter,
+                    "{\"retry_after\":" + this.retryAfter + "}"));
+            return;
+        }
+        if (takeOne(this.serverErrors) || random.nextDouble() < this.serverErrorRate) {
+            respond(exchange, 502, "<html><body>502 Bad Gateway</body></html>");
+            return;
+        }
+        var request = Request.parse(method, exchange.getRequestHeaders().getFirst("Content-Type"), body);
+        if (this.recording) {
+            this.requests.add(request);
+        }
+        var result = this.results.get(method);
+        respond(exchange, 200, "{\"ok\":true,\"result\":" + (result != null ? result.apply(request) : this.defaultResult(request)) + "}");
+    }
+
+    private void handleFile(HttpExchange exchange, String filePath) throws IOException {
+        this.sleep();
+        var content = this.files.get(URLDecoder.decode(filePath, StandardCharsets.UTF_8));
+        if (content == null) {
+            respond(exchange, 404, error(404, "Not Found", null));
+            return;
+        }
+        exchange.sendResponseHeaders(200, content.length);
+        exchange.getResponseBody().write(content);
+    }
+
+    private String defaultResult(Request request) {
+        var chatId = request.getField("chat_id");
+        var chat = "\"chat\":{\"id\":" + (chatId != null && chatId.matches("-?\\d+") ? chatId : "1") + ",\"type\":\"private\"}";
+        switch (request.getMethod()) {
+            case "getMe":
+                return "{\"id\":1,\"is_bot\":true,\"first_name\":\"Stub\",\"username\":\"stub_bot\"}";
+            case "getUpdates":
+                return "[]";
+            case "getFile":
+                return "{\"file_id\":\"" + request.getField("file_id") + "\",\"file_path\":\"documents/file_"
+                       + this.messageIds.incrementAndGet() + "\"}";
+            case "sendMessage":
+            case "editMessageText":
+                return "{\"message_id\":" + this.messageIds.incrementAndGet() + "," + chat + ",\"date\":0,\"text\":"
+                       + quote(request.getField("text") == null ? "" : request.getField("text")) + "}";
+            case "sendDocument":
+            case "sendAudio":
+            case "sendVideo":
+            case "sendVoice":
+            case "sendAnimation":
+            case "sendSticker":
+            case "sendPhoto": {
+                var messageId = this.messageIds.incrementAndGet();
+                var field = request.getMethod().substring(4).toLowerCase();
+                var file = "{\"file_id\":\"" + field + "-" + messageId + "\",\"file_unique_id\":\"u" + messageId + "\"}";
+                return "{\"message_id\":" + messageId + "," + chat + ",\"date\":0,\"" + field + "\":"
+                       + (field.equals("photo") ? "[" + file + "]" : file) + "}";
+            }
+            case "copyMessage":
+                return "{\"message_id\":" + this.messageIds.incrementAndGet() + "}";
+            case "forwardMessage":
+                return "{\"message_id\":" + this.messageIds.incrementAndGet() + "," + chat + ",\"date\":0}";
+            case "copyMessages":
+            case "forwardMessages": {
+                var result = new StringBuilder("[");
+                var messageIds = request.getField("message_ids");
+                int count = messageIds == null ? 0 : JsonValue.parse(messageIds.getBytes(StandardCharsets.UTF_8)).elements().size();
+                for (int i = 0; i < count; i++) {
+                    result.append(i == 0 ? "" : ",").append("{\"message_id\":").append(this.messageIds.incrementAndGet()).append('}');
+                }
+                return result.append(']').toString();
+            }
+            default:
+                return "true";
+        }
+    }
+
+    private void sleep() {
+        long latencyMillis = this.latencyMillis;
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static boolean takeOne(AtomicInteger counter) {
+        return counter.getAndUpdate(count -> Math.max(0, count - 1)) > 0;
+    }
+
+    private static String quote(String value) {
+        return new JsonWriter().writeString(value).toString();
+    }
+
+    private static String error(int code, String description, @Nullable String parameters) {
+        return "{\"ok\":false,\"error_code\":" + code + ",\"description\":" + quote(description)
+               + (parameters != null ? ",\"parameters\":" + parameters : "") + "}";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", body.startsWith("{") ? "application/json" : "text/html");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * Method call received by the server
+     */
+    public static final class Request {
+
+        private final String method;
+        private final Map<String, String> fields;
+        private final Map<String, byte[]> files;
+        private final Map<String, String> filenames;
+
+        private Request(String method, Map<String, String> fields, Map<String, byte[]> files, Map<String, String> filenames) {
+            this.method = method;
+            this.fields = fields;
+            this.files = files;
+            this.filenames = filenames;
+        }
+
+        static Request parse(String method, @Nullable String contentType, byte[] body) {
+            var fields = new LinkedHashMap<String, String>();
+            var files = new LinkedHashMap<String, byte[]>();
+            var filenames = new LinkedHashMap<String, String>();
+            if (contentType != null && contentType.startsWith("multipart/form-data")) {
+                var boundary = parameter(contentType, "boundary");
+                if (boundary == null) {
+                    throw new IllegalArgumentException("no boundary: " + contentType);
+                }
+                parseMultiPart(("\r\n--" + boundary).getBytes(StandardCharsets.US_ASCII), body, fields, files, filenames);
+            } else if (body.length > 0) {
+                for (var pair : new String(body, StandardCharsets.US_ASCII).split("&")) {
+                    int eq = pair.indexOf('=');
+                    var name = eq < 0 ? pair : pair.substring(0, eq);
+                    var value = eq < 0 ? "" : pair.substring(eq + 1);
+                    fields.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+                }
+            }
+            return new Request(method, fields, files, filenames);
+        }
+
+        private static void parseMultiPart(byte[] delimiter, byte[] body, Map<String, String> fields,
+                                           Map<String, byte[]> files, Map<String, String> filenames) {
+            // the first delimiter has no leading CRLF
+            int position = indexOf(body, Arrays.copyOfRange(delimiter, 2, delimiter.length), 0);
+            if (position != 0) {
+                throw new IllegalArgumentException("body does not start with the boundary");
+            }
+            position = delimiter.length - 2;
+            while (position + 2 <= body.length && !(body[position] == '-' && body[position + 1] == '-')) {
+                int headersEnd = indexOf(body, "\r\n\r\n".getBytes(StandardCharsets.US_ASCII), position);
+                int next = indexOf(body, delimiter, headersEnd + 4);
+                if (headersEnd < 0 || next < 0) {
+                    throw new IllegalArgumentException("truncated part");
+                }
+                var headers = new String(body, position + 2, headersEnd - position - 2, StandardCharsets.UTF_8);
+                String name = null;
+                String filename = null;
+                for (var header : headers.split("\r\n")) {
+                    if (header.regionMatches(true, 0, "Content-Disposition:", 0, 20)) {
+                        name = parameter(header, "name");
+                        filename = parameter(header, "filename");
+                    }
+                }
+                if (name == null) {
+                    throw new IllegalArgumentException("part without a name: " + headers);
+                }
+                var content = Arrays.copyOfRange(body, headersEnd + 4, next);
+                if (filename != null) {
+                    files.put(name, content);
+                    filenames.put(name, filename);
+                } else {
+                    fields.put(name, new String(content, StandardCharsets.UTF_8));
+                }
+                position = next + delimiter.length;
+            }
+        }
+
+        private static @Nullable String parameter(String header, String name) {
+            for (var parameter : header.split(";")) {
+                parameter = parameter.trim();
+                if (parameter.startsWith(name + "=")) {
+                    var value = parameter.substring(name.length() + 1);
+                    return value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")
+                           ? value.substring(1, value.length() - 1) : value;
+                }
+            }
+            return null;
+        }
+
+        private static int indexOf(byte[] array, byte[] target, int from) {
+            outer:
+            for (int i = Math.max(0, from); i <= array.length - target.length; i++) {
+                for (int j = 0; j < target.length; j++) {
+                    if (array[i + j] != target[j]) {
+                        continue outer;
+                    }
+                }
+                return i;
+            }
+            return -1;
+        }
+
+        public @NotNull String getMethod() {
+            return this.method;
+        }
+
+        /**
+         * @return plain fields, structured values as JSON
+         */
+        public @NotNull Map<String, String> getFields() {
+            return Collections.unmodifiableMap(this.fields);
+        }
+
+        public @Nullable String getField(@NotNull String name) {
+            return this.fields.get(name);
+        }
+
+        /**
+         * @param name part name
+         * @return uploaded file content, or null
+         */
+        public @Nullable byte[] getFile(@NotNull String name) {
+            return this.files.get(name);
+        }
+
+        public @Nullable String getFilename(@NotNull String name) {
+            return this.filenames.get(name);
+        }
+
+        @Override
+        public String toString() {
+            return this.method + " " + this.fields + (this.files.isEmpty() ? "" : " files " + this.filenames);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package telex.support;
+
+import org.jetbrains.annotations.NotNull;
+import telex.Telex;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Telex} which answers calls in process instead of sending them, for tests of the classes built on
+ * {@link Telex#callAsync(String, Map, HttpResponse.BodyHandler)}
+ * <p>
+ * The handler returns the JSON of the whole response, e.g. {@link #ok(String)} or {@link #error(int, String)},
+ * or throws to fail the call. It runs on another thread, after the latency if there is one, like a network
+ * call would. Every call is recorded in the order it was made.
+ */
+public class StubTelex extends Telex {
+
+    private final Handler handler;
+
+    private final List<Call> calls = Collections.synchronizedList(new ArrayList<>());
+
+    private volatile long latencyMillis;
+
+    /**
+     * @param handler answers calls
+     */
+    public StubTelex(@NotNull Handler handler) {
+        super("123:stub");
+        this.handler = handler;
+    }
+
+    /**
+     * @param result JSON of the result
+     * @return JSON of a successful response
+     */
+    public static @NotNull String ok(@NotNull String result) {
+        return "{\"ok\":true,\"result\":" + result + "}";
+    }
+
+    /**
+     * @param errorCode   error code, also the status code of the response
+     * @param description description
+     * @return JSON of a failed response
+     */
+    public static @NotNull String error(int errorCode, @NotNull String description) {
+        return "{\"ok\":false,\"error_code\":" + errorCode + ",\"description\":\"" + description + "\"}";
+    }
+
+    /**
+     * @param latencyMillis delay of every answer
+     * @return this
+     */
+    public @NotNull StubTelex setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    /**
+     * @return calls made so far
+     */
+    public @NotNull List<Call> getCalls() {
+        synchronized (this.calls) {
+            return new ArrayList<>(this.calls);
+        }
+    }
+
+    /**
+     * @param method Telegram method
+     * @return calls of the method made so far
+     */
+    public @NotNull List<Call> getCalls(@NotNull String method) {
+        var result = new ArrayList<Call>();
+        for (var call : this.getCalls()) {
+            if (call.getMethod().equals(method)) {
+                result.add(call);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public @NotNull <T> CompletableFuture<T> callAsync(@NotNull String method, @NotNull Map<String, ?> payload,
+                                                       @NotNull HttpResponse.BodyHandler<T> bodyHandler) {
+        var call = new Call(method, new LinkedHashMap<>(payload));
+        this.calls.add(call);
+        var executor = CompletableFuture.delayedExecutor(this.latencyMillis, TimeUnit.MILLISECONDS);
+        return CompletableFuture.supplyAsync(() -> this.handler.handle(method, call.getPayload()), executor)
+                .thenCompose(body -> replay(body.getBytes(StandardCharsets.UTF_8), bodyHandler));
+    }
+
+    private static <T> CompletionStage<T> replay(byte[] body, HttpResponse.BodyHandler<T> bodyHandler) {
+        int statusCode = (int) JsonValue.parse(body).getLong("error_code", 200);
+        var subscriber = bodyHandler.apply(new HttpResponse.ResponseInfo() {
+
+            @Override
+            public int statusCode() {
+                return statusCode;
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return HttpHeaders.of(Map.of(), (name, value) -> true);
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return HttpClient.Version.HTTP_1_1;
+            }
+        });
+        subscriber.onSubscribe(new Flow.Subscription() {
+
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        subscriber.onNext(List.of(ByteBuffer.wrap(body)));
+        subscriber.onComplete();
+        return subscriber.getBody();
+    }
+
+    public interface Handler {
+
+        /**
+         * @param method  Telegram method
+         * @param payload payload of the call
+         * @return JSON of the response
+         */
+        @NotNull String handle(@NotNull String method, @NotNull Map<String, Object> payload);
+    }
+
+    public static final class Call {
+
+        private final String method;
+
+        private final Map<String, Object> payload;
+
+        private Call(String method, Map<String, Object> payload) {
+            this.method = method;
+            this.payload = payload;
+        }
+
+        public @NotNull String getMethod() {
+            return this.method;
+        }
+
+        public @NotNull Map<String, Object> getPayload() {
+            return this.payload;
+        }
+
+        public Object get(@NotNull String name) {
+            return this.payload.get(name);
+        }
+    }
+}
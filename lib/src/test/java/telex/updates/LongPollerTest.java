@@ -0,0 +1,87 @@
+package telex.updates;
+
+import org.junit.jupiter.api.Test;
+import telex.support.StubTelex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongPollerTest {
+
+    @Test
+    public void testPoll() throws InterruptedException {
+        var failed = new AtomicBoolean();
+        var telex = new StubTelex((method, payload) -> {
+            // the first poll fails and is repeated after a backoff
+            if (failed.compareAndSet(false, true)) {
+                return StubTelex.error(502, "Bad Gateway");
+            }
+            long offset = ((Number) payload.get("offset")).longValue();
+            if (offset > 10) {
+                return StubTelex.ok("[]");
+            }
+            long first = Math.max(offset, 1);
+            return StubTelex.ok("[{\"update_id\":" + first + "},{\"update_id\":" + (first + 1) + "}]");
+        }).setLatencyMillis(5);
+        var received = Collections.synchronizedList(new ArrayList<Long>());
+        var done = new CountDownLatch(10);
+        try (var poller = new LongPoller(telex, update -> {
+            received.add(update.getLong("update_id", 0));
+            done.countDown();
+        })) {
+            poller.setTimeout(0).setLimit(2).start();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L), received);
+            var calls = telex.getCalls("getUpdates");
+            var offsets = new ArrayList<Object>();
+            for (var call : calls.subList(0, 6)) {
+                offsets.add(call.get("offset"));
+            }
+            assertEquals(List.of(0L, 0L, 3L, 5L, 7L, 9L), offsets);
+            assertEquals(2, calls.get(0).get("limit"));
+            assertEquals(0, calls.get(0).get("timeout"));
+        }
+    }
+
+    @Test
+    public void testFailedDispatch() throws InterruptedException {
+        var telex = new StubTelex((method, payload) -> {
+            long offset = Math.max(((Number) payload.get("offset")).longValue(), 1);
+            return StubTelex.ok(offset > 6 ? "[]" : "[{\"update_id\":" + offset + "}]");
+        }).setLatencyMillis(5);
+        var executions = new AtomicInteger();
+        // the third batch is rejected, the handler fails with an Error on the second
+        Executor executor = runnable -> {
+            if (executions.incrementAndGet() == 3) {
+                throw new RejectedExecutionException("rejected");
+            }
+            new Thread(runnable).start();
+        };
+        var received = Collections.synchronizedList(new ArrayList<Long>());
+        var done = new CountDownLatch(1);
+        try (var poller = new LongPoller(telex, update -> {
+            long updateId = update.getLong("update_id", 0);
+            received.add(updateId);
+            if (updateId == 2) {
+                throw new Error("handler failed");
+            }
+            if (updateId == 6) {
+                done.countDown();
+            }
+        }, executor)) {
+            poller.setTimeout(0).setLimit(1).setMaxPendingBatches(1).start();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(List.of(1L, 2L, 4L, 5L, 6L), received);
+        }
+    }
+}
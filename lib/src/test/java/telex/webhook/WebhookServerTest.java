@@ -0,0 +1,90 @@
+package telex.webhook;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WebhookServerTest {
+
+    private static final String UPDATE = "{\"update_id\":1,\"callback_query\":{\"id\":\"4382\","
+                                         + "\"from\":{\"id\":42,\"first_name\":\"Test\"},\"data\":\"vote:1\"}}";
+
+    @Test
+    public void testReply() throws IOException, InterruptedException {
+        var server = WebhookServer.replying(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), "/telegram",
+                "secret", update -> WebhookReply.of("answerCallbackQuery", Map.of(
+                        "callback_query_id", update.get("callback_query").getString("id"))));
+        server.start();
+        try {
+            var client = HttpClient.newHttpClient();
+            var uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/telegram");
+            var response = client.send(HttpRequest.newBuilder(uri)
+                    .header("X-Telegram-Bot-Api-Secret-Token", "secret")
+                    .POST(HttpRequest.BodyPublishers.ofString(UPDATE))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            assertEquals("{\"method\":\"answerCallbackQuery\",\"callback_query_id\":\"4382\"}", response.body());
+
+            var unauthorized = client.send(HttpRequest.newBuilder(uri)
+                    .header("X-Telegram-Bot-Api-Secret-Token", "guess")
+                    .POST(HttpRequest.BodyPublishers.ofString(UPDATE))
+                    .build(), HttpResponse.BodyHandlers.discarding());
+            assertEquals(401, unauthorized.statusCode());
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testReplyWithFile() {
+        assertThrows(IllegalArgumentException.class, () -> WebhookReply.of("sendDocument",
+                Map.of("chat_id", 42, "document", Path.of("report.pdf"))));
+        assertEquals("{\"method\":\"sendMessage\",\"chat_id\":42}",
+                new String(WebhookReply.of("sendMessage", Map.of("chat_id", 42)).toJson(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testBodyLimit() throws IOException, InterruptedException {
+        var received = new AtomicInteger();
+        var server = new WebhookServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), "/telegram",
+                null, update -> received.incrementAndGet());
+        server.start();
+        try {
+            var client = HttpClient.newHttpClient();
+            var uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/telegram");
+            var large = new byte[(1 << 20) + 1];
+            Arrays.fill(large, (byte) ' ');
+            var sized = client.send(HttpRequest.newBuilder(uri)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(large))
+                    .build(), HttpResponse.BodyHandlers.discarding());
+            assertEquals(413, sized.statusCode());
+            // without a Content-Length the body is read up to the limit
+            var chunked = client.send(HttpRequest.newBuilder(uri)
+                    .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new ByteArrayInputStream(large)))
+                    .build(), HttpResponse.BodyHandlers.discarding());
+            assertEquals(413, chunked.statusCode());
+            var accepted = client.send(HttpRequest.newBuilder(uri)
+                    .POST(HttpRequest.BodyPublishers.ofString(UPDATE))
+                    .build(), HttpResponse.BodyHandlers.discarding());
+            assertEquals(204, accepted.statusCode());
+            assertEquals(1, received.get());
+        } finally {
+            server.close();
+        }
+    }
+}